@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import com.github.ivbaranov.rxbluetooth.framing.DelimiterFrameDecoder;
+import com.github.ivbaranov.rxbluetooth.transport.StreamTransport;
+import io.reactivex.Flowable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the inbound paths of {@link BluetoothConnection}: each invocation drains
+ * {@link #PAYLOAD_SIZE} bytes of newline terminated telemetry from an in-memory stream through a
+ * connection created before the invocation. Scores are throughput over whole invocations, reported
+ * per byte, so they read as bytes/us and the gc profiler's allocation rate as bytes allocated per
+ * byte read. They are not latencies of single strings or frames, which aren't measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadBenchmark {
+  static final int PAYLOAD_SIZE = 64 * 1024;
+
+  private static final byte[] DELIMITER = { '\r', '\n' };
+
+  private byte[] payload;
+  private BluetoothConnection connection;
+
+  @Setup(Level.Trial) public void setup() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(PAYLOAD_SIZE);
+    byte[] line = "$GPGGA,123519,4807.038,N,01131.000,E,1,08,0.9,545.4,M,46.9,M,,*47\r\n"
+        .getBytes(Charset.forName("US-ASCII"));
+    while (out.size() + line.length <= PAYLOAD_SIZE) {
+      out.write(line, 0, line.length);
+    }
+    while (out.size() < PAYLOAD_SIZE) {
+      out.write('.');
+    }
+    payload = out.toByteArray();
+  }
+
+  /**
+   * Draining the stream ends the connection, so every invocation gets a new one. It reads on the
+   * calling thread, so the whole payload is drained by the time subscribe returns.
+   */
+  @Setup(Level.Invocation) public void connect() throws Exception {
+    connection = new BluetoothConnection(
+        new StreamTransport(new ByteArrayInputStream(payload), new NullOutputStream()),
+        Schedulers.trampoline());
+  }
+
+  @TearDown(Level.Invocation) public void disconnect() {
+    connection.closeConnection();
+  }
+
+  @Benchmark @OperationsPerInvocation(PAYLOAD_SIZE)
+  public void chunkStream(Blackhole blackhole) throws Exception {
+    drain(connection.observeChunkStream(), blackhole);
+  }
+
+  @Benchmark @OperationsPerInvocation(PAYLOAD_SIZE)
+  public void byteStream(Blackhole blackhole) throws Exception {
+    drain(connection.observeByteStream(), blackhole);
+  }
+
+  @Benchmark @OperationsPerInvocation(PAYLOAD_SIZE)
+  public void stringStream(Blackhole blackhole) throws Exception {
+    drain(connection.observeStringStream(), blackhole);
+  }
+
+  @Benchmark @OperationsPerInvocation(PAYLOAD_SIZE)
+  public void delimitedStringStream(Blackhole blackhole) throws Exception {
+    drain(connection.observeStringStream(DELIMITER,
+        DelimiterFrameDecoder.DEFAULT_MAX_FRAME_LENGTH), blackhole);
+  }
+
+  @Benchmark @OperationsPerInvocation(PAYLOAD_SIZE)
+  public void frames(Blackhole blackhole) throws Exception {
+    drain(connection.observeFrames(new DelimiterFrameDecoder(DELIMITER)), blackhole);
+  }
+
+  @Benchmark @OperationsPerInvocation(PAYLOAD_SIZE)
+  public void pooledFrames(final Blackhole blackhole) throws Exception {
+    connection.observePooledFrames(new DelimiterFrameDecoder(DELIMITER))
+        .subscribe(new Consumer<Frame>() {
+          @Override public void accept(Frame frame) {
+            blackhole.consume(frame.length());
+            frame.release();
+          }
+        }, new Consumer<Throwable>() {
+          @Override public void accept(Throwable e) {
+            blackhole.consume(e);
+          }
+        });
+  }
+
+  /**
+   * Consumes every item; the end of the in-memory stream surfaces as an error and is consumed too.
+   */
+  private static <T> void drain(Flowable<T> flowable, final Blackhole blackhole) {
+    flowable.subscribe(new Consumer<T>() {
+      @Override public void accept(T item) {
+        blackhole.consume(item);
+      }
+    }, new Consumer<Throwable>() {
+      @Override public void accept(Throwable e) {
+        blackhole.consume(e);
+      }
+    });
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import com.github.ivbaranov.rxbluetooth.transport.StreamTransport;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the outbound paths of {@link BluetoothConnection} writing into a stream that discards
+ * everything, so only the library's own cost is left. Scores are reported per payload.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark {
+  private static final int BATCH_COUNT = 256;
+
+  @Param({ "16", "256" }) int payloadSize;
+
+  private BluetoothConnection connection;
+  private byte[] bytes;
+  private String text;
+  private Flowable<byte[]> batch;
+
+  @Setup public void setup() throws Exception {
+    connection = new BluetoothConnection(
+        new StreamTransport(new ByteArrayInputStream(new byte[0]), new NullOutputStream()),
+        Schedulers.trampoline());
+
+    bytes = new byte[payloadSize];
+    Arrays.fill(bytes, (byte) 'x');
+    text = new String(bytes, Charset.forName("US-ASCII"));
+
+    byte[][] payloads = new byte[BATCH_COUNT][];
+    Arrays.fill(payloads, bytes);
+    batch = Flowable.fromArray(payloads);
+  }
+
+  @TearDown public void tearDown() {
+    connection.closeConnection();
+  }
+
+  @Benchmark public boolean sendByte() {
+    return connection.send(bytes[0]);
+  }
+
+  @Benchmark public boolean sendBytes() {
+    return connection.send(bytes);
+  }
+
+  @Benchmark public boolean sendString() {
+    return connection.send(text);
+  }
+
+  @Benchmark @OperationsPerInvocation(BATCH_COUNT)
+  public Integer sendAll() {
+    return connection.sendAll(batch).blockingLast(0);
+  }
+
+  @Benchmark @OperationsPerInvocation(BATCH_COUNT)
+  public void sendAsync() {
+    connection.sendAsync(batch).blockingAwait();
+  }
+}
@@ -16,94 +16,354 @@
 package com.github.ivbaranov.rxbluetooth;
 
 import android.bluetooth.BluetoothSocket;
+import android.support.annotation.Nullable;
 import android.util.Log;
 import com.github.ivbaranov.rxbluetooth.exceptions.ConnectionClosedException;
+import com.github.ivbaranov.rxbluetooth.exceptions.FrameTooLongException;
+import com.github.ivbaranov.rxbluetooth.framing.AnyDelimiterFrameDecoder;
+import com.github.ivbaranov.rxbluetooth.framing.DelimiterFrameDecoder;
+import com.github.ivbaranov.rxbluetooth.framing.FrameDecoder;
+import com.github.ivbaranov.rxbluetooth.transport.BluetoothSocketTransport;
+import com.github.ivbaranov.rxbluetooth.transport.Transport;
+import io.reactivex.BackpressureOverflowStrategy;
 import io.reactivex.BackpressureStrategy;
+import io.reactivex.Completable;
+import io.reactivex.Emitter;
 import io.reactivex.Flowable;
 import io.reactivex.FlowableEmitter;
 import io.reactivex.FlowableOnSubscribe;
-import io.reactivex.FlowableOperator;
+import io.reactivex.Scheduler;
+import io.reactivex.exceptions.MissingBackpressureException;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.CompletableSubject;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import org.reactivestreams.Subscriber;
-import org.reactivestreams.Subscription;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.reactivestreams.Publisher;
 
+/**
+ * Reads from and writes to a connected {@link Transport}, usually a {@link BluetoothSocket}.
+ *
+ * <p>All input streams of a connection share a single reader. Once the last subscriber of the
+ * input streams cancels, the whole connection is closed, including its output side: closing the
+ * socket is the only way to interrupt a pending read, and a {@link BluetoothSocket} can't be
+ * closed for reading only. Afterwards {@code send()} returns false, {@code sendAsync()} fails with
+ * {@link ConnectionClosedException} and input streams subscribed again complete right away. Keep
+ * an input stream subscribed for as long as the connection is used, e.g. don't let operators like
+ * {@code take()} or {@code firstElement()} cancel the only subscription. Connections shared by
+ * {@link ConnectionManager} are kept subscribed by the manager.
+ */
 public final class BluetoothConnection {
 
   private static final String TAG = BluetoothConnection.class.getName();
 
-  private BluetoothSocket socket;
+  /** Buffer size used by {@link #observeChunkStream()}. */
+  public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+  /** Linger time used by {@link #sendAll(Flowable)}, in milliseconds. */
+  public static final long DEFAULT_LINGER_MILLIS = 5;
+
+  /** Queue size used by {@link #sendAsync(Flowable)}. */
+  public static final int DEFAULT_SEND_QUEUE_SIZE = 16;
+
+  private static final Charset DEFAULT_CHARSET = Charset.defaultCharset();
+
+  private final Transport transport;
 
   InputStream inputStream;
   private OutputStream outputStream;
 
-  private Flowable<Byte> observeInputStream;
+  private Flowable<byte[]> observeInputStream;
+  private int overflowCapacity;
+  private BackpressureOverflowStrategy overflowStrategy;
+  private final AtomicLong overflowCount = new AtomicLong();
+
+  private final ExecutorService readExecutor;
+  private final Scheduler readScheduler;
+  private final ExecutorService writeExecutor;
+  private final Scheduler writeScheduler;
+
+  private final Object writeLock = new Object();
+  private final byte[] singleByte = new byte[1];
+  private CharsetCodec encoder;
 
-  boolean connected = false;
+  volatile boolean connected = false;
+  private volatile boolean closeRequested;
+  private final CompletableSubject closed = CompletableSubject.create();
 
   /**
-   * Container for simplifying read and write from/to {@link BluetoothSocket}.
+   * Container for simplifying read and write from/to {@link BluetoothSocket}. The connection
+   * reads and writes on its own named daemon threads, which are stopped by {@link
+   * #closeConnection()}.
    *
    * @param socket bluetooth socket
    * @throws Exception if can't get input/output stream from the socket
    */
   public BluetoothConnection(BluetoothSocket socket) throws Exception {
-    if (socket == null) {
-      throw new InvalidParameterException("Bluetooth socket can't be null");
+    this(socket, null);
+  }
+
+  /**
+   * Container for simplifying read and write from/to {@link BluetoothSocket}. Reading blocks a
+   * thread of the given scheduler for as long as the input stream is observed, so it should be
+   * able to spare one, e.g. {@link io.reactivex.schedulers.Schedulers#newThread()}.
+   *
+   * @param socket bluetooth socket
+   * @param readScheduler scheduler to read on, or null to use the connection's own reader thread
+   * @throws Exception if can't get input/output stream from the socket
+   */
+  public BluetoothConnection(BluetoothSocket socket, @Nullable Scheduler readScheduler)
+      throws Exception {
+    this(new BluetoothSocketTransport(socket), readScheduler);
+  }
+
+  /**
+   * Container for simplifying read and write from/to any {@link Transport}, e.g. a TCP socket or
+   * an in-memory pipe. The connection reads and writes on its own named daemon threads, which are
+   * stopped by {@link #closeConnection()}.
+   *
+   * @param transport transport to read from and write to
+   * @throws Exception if can't get input/output stream from the transport
+   */
+  public BluetoothConnection(Transport transport) throws Exception {
+    this(transport, null);
+  }
+
+  /**
+   * Container for simplifying read and write from/to any {@link Transport}. Reading blocks a
+   * thread of the given scheduler for as long as the input stream is observed, so it should be
+   * able to spare one, e.g. {@link io.reactivex.schedulers.Schedulers#newThread()}.
+   *
+   * @param transport transport to read from and write to
+   * @param readScheduler scheduler to read on, or null to use the connection's own reader thread
+   * @throws Exception if can't get input/output stream from the transport
+   */
+  public BluetoothConnection(Transport transport, @Nullable Scheduler readScheduler)
+      throws Exception {
+    if (transport == null) {
+      throw new InvalidParameterException("Transport can't be null");
     }
 
-    this.socket = socket;
+    this.transport = transport;
+
+    if (readScheduler == null) {
+      readExecutor = Utils.newSingleThreadExecutor("RxBluetooth-reader");
+      this.readScheduler = Schedulers.from(readExecutor);
+    } else {
+      readExecutor = null;
+      this.readScheduler = readScheduler;
+    }
+    writeExecutor = Utils.newSingleThreadExecutor("RxBluetooth-writer");
+    writeScheduler = Schedulers.from(writeExecutor);
 
     try {
-      inputStream = socket.getInputStream();
-      outputStream = socket.getOutputStream();
+      inputStream = transport.getInputStream();
+      outputStream = transport.getOutputStream();
 
       connected = true;
     } catch (IOException e) {
-      throw new Exception("Can't get stream from bluetooth socket");
+      throw new Exception("Can't get stream from transport");
     } finally {
       if (!connected) {
+        close();
+      }
+    }
+  }
+
+  /**
+   * Observes chunks of bytes from bluetooth's {@link InputStream}. Bytes are read in bulk into a
+   * reusable buffer and every successful read is emitted as a new array holding only the bytes
+   * actually read, so one emission carries as many bytes as the socket had available. The copy
+   * is needed since a chunk is shared by all subscribers, which may keep it; it's not pooled.
+   *
+   * <p>All streams of this connection share a single reader running on the connection's reader
+   * thread, so subscribers are never blocked by reading. The socket is read only as fast as
+   * subscribers request data, see {@link #setInboundBuffer}. The buffer size of the first
+   * subscribed stream is used until the connection is closed.
+   *
+   * <p>Cancelling the last subscription of the input streams closes the whole connection, see
+   * {@link BluetoothConnection}.
+   *
+   * @param bufferSize maximum number of bytes read at once
+   * @return RxJava Observable with chunks of bytes
+   */
+  public Flowable<byte[]> observeChunkStream(final int bufferSize) {
+    if (bufferSize <= 0) {
+      throw new InvalidParameterException("Buffer size must be positive");
+    }
+
+    synchronized (this) {
+      if (observeInputStream == null) {
+        observeInputStream = createInputStream(bufferSize);
+      }
+      return observeInputStream;
+    }
+  }
+
+  private Flowable<byte[]> createInputStream(final int bufferSize) {
+    Flowable<byte[]> reader = Flowable.using(new Callable<ReaderState>() {
+      @Override public ReaderState call() {
+        return new ReaderState(bufferSize);
+      }
+    }, new Function<ReaderState, Publisher<byte[]>>() {
+      @Override public Publisher<byte[]> apply(final ReaderState state) {
+        return Flowable.generate(new Consumer<Emitter<byte[]>>() {
+          @Override public void accept(Emitter<byte[]> emitter) {
+            read(state, emitter);
+          }
+        });
+      }
+    }, new Consumer<ReaderState>() {
+      @Override public void accept(ReaderState state) {
+        // A blocked read can only be interrupted by closing the socket.
+        state.released = true;
         closeConnection();
       }
+    }).subscribeOn(readScheduler);
+
+    if (overflowStrategy != null) {
+      reader = reader.onBackpressureBuffer(overflowCapacity, new Action() {
+        @Override public void run() {
+          overflowCount.incrementAndGet();
+        }
+      }, overflowStrategy);
+    }
+
+    return reader.share();
+  }
+
+  private void read(ReaderState state, Emitter<byte[]> emitter) {
+    try {
+      int read;
+      do {
+        read = inputStream.read(state.buffer, 0, state.buffer.length);
+      } while (read == 0);
+      if (read < 0) {
+        throw new EOFException("End of stream reached");
+      }
+      emitter.onNext(Arrays.copyOf(state.buffer, read));
+    } catch (IOException e) {
+      if (state.released || closeRequested) {
+        // Stream was closed because all subscribers are gone or on request, nobody to blame.
+        emitter.onComplete();
+        return;
+      }
+      close();
+      emitter.onError(new ConnectionClosedException("Can't read stream", e));
+    }
+  }
+
+  /**
+   * Sets a bounded buffer between the socket and subscribers of the input stream, for
+   * subscribers that can't afford to slow down the remote device. Must be called before the input
+   * stream is observed for the first time.
+   *
+   * <p>By default there is no buffer: the socket is read only when every subscriber requested
+   * more data, so a slow subscriber stops reading and RFCOMM flow control pushes back on the
+   * remote device. With a buffer the socket is read continuously and once {@code capacity}
+   * chunks are waiting, chunks are dropped or the stream fails, depending on the strategy.
+   * Dropped chunks are counted by {@link #getInboundOverflowCount()}.
+   *
+   * <p>Connections of a {@link ConnectionManager} are observed as soon as they open, so their
+   * buffer is set with {@link ConnectionManager#setInboundBuffer} instead.
+   *
+   * @param capacity maximum number of chunks waiting for subscribers
+   * @param strategy what to do when the buffer is full
+   * @throws IllegalStateException if the input stream is already observed
+   */
+  public synchronized void setInboundBuffer(int capacity, BackpressureOverflowStrategy strategy) {
+    if (capacity <= 0) {
+      throw new InvalidParameterException("Capacity must be positive");
+    }
+    if (observeInputStream != null) {
+      throw new IllegalStateException("Input stream is already observed");
     }
+
+    overflowCapacity = capacity;
+    overflowStrategy = strategy;
+  }
+
+  /**
+   * Returns number of times the buffer set by {@link #setInboundBuffer} overflowed.
+   *
+   * @return overflow count
+   */
+  public long getInboundOverflowCount() {
+    return overflowCount.get();
+  }
+
+  /**
+   * Observes chunks of bytes from bluetooth's {@link InputStream} using {@link
+   * #DEFAULT_BUFFER_SIZE} buffer.
+   *
+   * <p>Cancelling the last subscription of the input streams closes the whole connection, see
+   * {@link BluetoothConnection}.
+   *
+   * @return RxJava Observable with chunks of bytes
+   */
+  public Flowable<byte[]> observeChunkStream() {
+    return observeChunkStream(DEFAULT_BUFFER_SIZE);
   }
 
   /**
    * Observes byte from bluetooth's {@link InputStream}. Will be emitted per byte.
    *
+   * <p>Cancelling the last subscription of the input streams closes the whole connection, see
+   * {@link BluetoothConnection}.
+   *
    * @return RxJava Observable with {@link Byte}
    */
   public Flowable<Byte> observeByteStream() {
-    if (observeInputStream == null) {
-      observeInputStream = Flowable.create(new FlowableOnSubscribe<Byte>() {
-        @Override public void subscribe(final FlowableEmitter<Byte> subscriber) {
-          while (!subscriber.isCancelled()) {
-            try {
-              subscriber.onNext((byte) inputStream.read());
-            } catch (IOException e) {
-              connected = false;
-              subscriber.onError(new ConnectionClosedException("Can't read stream", e));
-            } finally {
-              if (!connected) {
-                closeConnection();
+    return observeChunkStream().concatMapDelayError(new Function<byte[], Publisher<Byte>>() {
+      @Override public Publisher<Byte> apply(final byte[] chunk) {
+        return Flowable.fromIterable(new Iterable<Byte>() {
+          @Override public Iterator<Byte> iterator() {
+            return new Iterator<Byte>() {
+              int index;
+
+              @Override public boolean hasNext() {
+                return index < chunk.length;
+              }
+
+              @Override public Byte next() {
+                if (index >= chunk.length) {
+                  throw new NoSuchElementException();
+                }
+                return chunk[index++];
               }
-            }
-          }
-        }
-      }, BackpressureStrategy.BUFFER).share();
-    }
 
-    return observeInputStream;
+              @Override public void remove() {
+                throw new UnsupportedOperationException();
+              }
+            };
+          }
+        });
+      }
+    });
   }
 
   /**
    * Observes string from bluetooth's {@link InputStream} with '\r' (Carriage Return)
-   * and '\n' (New Line) as delimiter.
+   * and '\n' (New Line) as delimiter. Lines may end with CR, LF or CRLF.
+   *
+   * <p>Cancelling the last subscription of the input streams closes the whole connection, see
+   * {@link BluetoothConnection}.
    *
    * @return RxJava Observable with {@link String}
    */
@@ -112,84 +372,169 @@ public final class BluetoothConnection {
   }
 
   /**
-   * Observes string from bluetooth's {@link InputStream}.
+   * Observes string from bluetooth's {@link InputStream} with '\r' (Carriage Return)
+   * and '\n' (New Line) as delimiter. Lines may end with CR, LF or CRLF.
+   *
+   * <p>Cancelling the last subscription of the input streams closes the whole connection, see
+   * {@link BluetoothConnection}.
+   *
+   * @param charset charset used to decode strings
+   * @return RxJava Observable with {@link String}
+   */
+  public Flowable<String> observeStringStream(Charset charset) {
+    return observeStringStream(charset, '\r', '\n');
+  }
+
+  /**
+   * Observes string from bluetooth's {@link InputStream}. Strings are separated by any of the
+   * delimiter chars, and a run of delimiter chars ends a single string, so with '\r' and '\n'
+   * lines ending with CR, LF or CRLF are all split alike and empty strings are not emitted. Use
+   * {@link #observeStringStream(byte[], int)} to split on a whole delimiter sequence instead.
+   *
+   * <p>Cancelling the last subscription of the input streams closes the whole connection, see
+   * {@link BluetoothConnection}.
    *
    * @param delimiter char(s) used for string delimiter
    * @return RxJava Observable with {@link String}
    */
   public Flowable<String> observeStringStream(final int... delimiter) {
-    return observeByteStream().lift(new FlowableOperator<String, Byte>() {
-      @Override public Subscriber<? super Byte> apply(final Subscriber<? super String> subscriber) {
-        return new Subscriber<Byte>() {
-          ArrayList<Byte> buffer = new ArrayList<>();
-          List<Integer> receivedDelimiters = new ArrayList<>();
-
-          @Override public void onSubscribe(Subscription d) {
-            subscriber.onSubscribe(d);
-          }
-
-          @Override public void onComplete() {
-            if (!buffer.isEmpty()) {
-              emit();
-            }
-            subscriber.onComplete();
-          }
-
-          @Override public void onError(Throwable e) {
-            if (!buffer.isEmpty()) {
-              emit();
-            }
-            subscriber.onError(e);
-          }
-
-          @Override public void onNext(Byte b) {
-            boolean found = false;
-            for (int d : delimiter) {
-              if (b == d) {
-                receivedDelimiters.add((int) b);
-                found = true;
-                break;
-              }
-            }
+    return observeStringStream(DEFAULT_CHARSET, delimiter);
+  }
 
-            if (found) {
-              if (!delimitersMatched()) {
-                emit();
-              }
-            } else {
-              buffer.add(b);
-            }
-          }
+  /**
+   * Observes string from bluetooth's {@link InputStream}. Strings are separated by any of the
+   * delimiter chars, as in {@link #observeStringStream(int...)}.
+   *
+   * <p>Cancelling the last subscription of the input streams closes the whole connection, see
+   * {@link BluetoothConnection}.
+   *
+   * @param charset charset used to decode strings
+   * @param delimiter char(s) used for string delimiter
+   * @return RxJava Observable with {@link String}
+   */
+  public Flowable<String> observeStringStream(final Charset charset, final int... delimiter) {
+    final byte[] delimiters = new byte[delimiter.length];
+    for (int i = 0; i < delimiter.length; i++) {
+      delimiters[i] = (byte) delimiter[i];
+    }
 
-          private void emit() {
-            if (buffer.isEmpty()) {
-              subscriber.onNext("");
-              return;
-            }
+    return observeStrings(charset, new Callable<FrameDecoder>() {
+      @Override public FrameDecoder call() {
+        return new AnyDelimiterFrameDecoder(delimiters,
+            DelimiterFrameDecoder.DEFAULT_MAX_FRAME_LENGTH);
+      }
+    });
+  }
 
-            byte[] bArray = new byte[buffer.size()];
+  /**
+   * Observes string from bluetooth's {@link InputStream}. Strings are separated by the whole
+   * delimiter sequence, which may arrive split across several reads. Notifies observers with
+   * {@link FrameTooLongException} via {@code onError()} if no delimiter was found within {@code
+   * maxFrameLength} bytes.
+   *
+   * <p>Cancelling the last subscription of the input streams closes the whole connection, see
+   * {@link BluetoothConnection}.
+   *
+   * @param delimiter sequence of bytes used for string delimiter
+   * @param maxFrameLength maximum length of a string in bytes
+   * @return RxJava Observable with {@link String}
+   */
+  public Flowable<String> observeStringStream(byte[] delimiter, int maxFrameLength) {
+    return observeStringStream(DEFAULT_CHARSET, delimiter, maxFrameLength);
+  }
 
-            for (int i = 0; i < buffer.size(); i++) {
-              bArray[i] = buffer.get(i);
-            }
+  /**
+   * Observes string from bluetooth's {@link InputStream}. Strings are separated by the whole
+   * delimiter sequence, which may arrive split across several reads, and are decoded only once
+   * complete, so multi-byte characters are never cut in half. Notifies observers with {@link
+   * FrameTooLongException} via {@code onError()} if no delimiter was found within {@code
+   * maxFrameLength} bytes.
+   *
+   * <p>Cancelling the last subscription of the input streams closes the whole connection, see
+   * {@link BluetoothConnection}.
+   *
+   * @param charset charset used to decode strings
+   * @param delimiter sequence of bytes used for string delimiter
+   * @param maxFrameLength maximum length of a string in bytes
+   * @return RxJava Observable with {@link String}
+   */
+  public Flowable<String> observeStringStream(final Charset charset, final byte[] delimiter,
+      final int maxFrameLength) {
+    return observeStrings(charset, new Callable<FrameDecoder>() {
+      @Override public FrameDecoder call() {
+        return new DelimiterFrameDecoder(delimiter, maxFrameLength);
+      }
+    });
+  }
 
-            subscriber.onNext(new String(bArray));
-            buffer.clear();
-            receivedDelimiters.clear();
+  /**
+   * Observes strings decoded from the frames of a new decoder created for every subscription.
+   */
+  private Flowable<String> observeStrings(final Charset charset,
+      final Callable<FrameDecoder> decoderFactory) {
+    return Flowable.defer(new Callable<Publisher<String>>() {
+      @Override public Publisher<String> call() throws Exception {
+        final CharsetCodec codec = new CharsetCodec(charset);
+        return decodeFrames(new FrameCollector<String>(decoderFactory.call()) {
+          @Override String convert(byte[] buffer, int offset, int length) {
+            return codec.decode(buffer, offset, length);
           }
+        });
+      }
+    });
+  }
 
-          /** Returns true if list of received delimiter(s) matched the provided one(s).*/
-          private boolean delimitersMatched() {
-            int[] array = new int[receivedDelimiters.size()];
-            for (int i = 0; i < receivedDelimiters.size(); i++) {
-              array[i] = receivedDelimiters.get(i);
-            }
+  /**
+   * Observes frames from bluetooth's {@link InputStream} decoded by the given {@link
+   * FrameDecoder}. The decoder is reset on subscription; since it keeps state between reads, one
+   * decoder instance must not be used by several streams at once. Notifies observers with the
+   * decoder's {@link IOException} via {@code onError()} if data can't be decoded.
+   *
+   * <p>Cancelling the last subscription of the input streams closes the whole connection, see
+   * {@link BluetoothConnection}.
+   *
+   * @param decoder frame decoder
+   * @return RxJava Observable with frames
+   */
+  public Flowable<byte[]> observeFrames(final FrameDecoder decoder) {
+    return Flowable.defer(new Callable<Publisher<byte[]>>() {
+      @Override public Publisher<byte[]> call() {
+        decoder.reset();
+        return decodeFrames(new FrameCollector<byte[]>(decoder) {
+          @Override byte[] convert(byte[] buffer, int offset, int length) {
+            return Arrays.copyOfRange(buffer, offset, offset + length);
+          }
+        });
+      }
+    });
+  }
 
-            return Arrays.equals(array, delimiter);
+  /**
+   * Observes frames from bluetooth's {@link InputStream} decoded by the given {@link
+   * FrameDecoder}, like {@link #observeFrames(FrameDecoder)} does, but every frame is copied into
+   * a pooled array instead of a newly allocated one. Subscribers should {@link Frame#release()}
+   * frames once processed. Frames are decoded from the chunks of {@link #observeChunkStream()},
+   * which are still allocated for every read.
+   *
+   * <p>Cancelling the last subscription of the input streams closes the whole connection, see
+   * {@link BluetoothConnection}.
+   *
+   * @param decoder frame decoder
+   * @return RxJava Observable with {@link Frame}
+   */
+  public Flowable<Frame> observePooledFrames(final FrameDecoder decoder) {
+    return Flowable.defer(new Callable<Publisher<Frame>>() {
+      @Override public Publisher<Frame> call() {
+        decoder.reset();
+        return decodeFrames(new FrameCollector<Frame>(decoder) {
+          @Override Frame convert(byte[] buffer, int offset, int length) {
+            Frame frame = Frame.obtain(length);
+            System.arraycopy(buffer, offset, frame.array(), 0, length);
+            return frame;
           }
-        };
+        });
       }
-    }).onBackpressureBuffer();
+    });
   }
 
   /**
@@ -199,7 +544,10 @@ public final class BluetoothConnection {
    * @return true if success, false if there was error occurred or disconnected
    */
   public boolean send(byte oneByte) {
-    return send(new byte[] { oneByte });
+    synchronized (writeLock) {
+      singleByte[0] = oneByte;
+      return send(singleByte, 0, 1);
+    }
   }
 
   /**
@@ -209,42 +557,300 @@ public final class BluetoothConnection {
    * @return true if success, false if there was error occurred or disconnected
    */
   public boolean send(byte[] bytes) {
+    return send(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Send string of text to bluetooth output stream.
+   *
+   * @param text text to send
+   * @return true if success, false if there was error occurred or disconnected
+   */
+  public boolean send(String text) {
+    return send(DEFAULT_CHARSET, text);
+  }
+
+  /**
+   * Send string of text to bluetooth output stream.
+   *
+   * @param charset charset used to encode the text
+   * @param text text to send
+   * @return true if success, false if there was error occurred or disconnected
+   */
+  public boolean send(Charset charset, String text) {
+    synchronized (writeLock) {
+      if (encoder == null || !encoder.charset().equals(charset)) {
+        encoder = new CharsetCodec(charset);
+      }
+      ByteBuffer bytes = encoder.encode(text);
+      return send(bytes.array(), bytes.position(), bytes.remaining());
+    }
+  }
+
+  private boolean send(byte[] bytes, int offset, int length) {
     if (!connected) return false;
 
     try {
-      outputStream.write(bytes);
-      outputStream.flush();
+      write(bytes, offset, length);
       return true;
     } catch (IOException e) {
-      // Error occurred. Better to close terminate the connection
-      connected = false;
       Log.e(TAG, "Fail to send data");
       return false;
-    } finally {
+    }
+  }
+
+  /**
+   * Sends payloads emitted by the given {@link Flowable}, coalescing them into writes of up to
+   * {@link #DEFAULT_BUFFER_SIZE} bytes. See {@link #sendAll(Flowable, int, long, TimeUnit)}.
+   *
+   * @param payloads data to send
+   * @return RxJava Observable with number of bytes written per batch
+   */
+  public Flowable<Integer> sendAll(Flowable<byte[]> payloads) {
+    return sendAll(payloads, DEFAULT_BUFFER_SIZE, DEFAULT_LINGER_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Sends payloads emitted by the given {@link Flowable}, coalescing them into batches which are
+   * written and flushed at once. A batch is written as soon as it holds {@code maxBatchSize} bytes
+   * or {@code lingerTime} after its first byte was queued, whichever comes first; payloads larger
+   * than a batch are split. Pending bytes are written when payloads complete. Writing is done on
+   * the connection's writer thread. Notifies observers with {@link ConnectionClosedException} via
+   * {@code onError()} if writing fails.
+   *
+   * <p>Counts are reports, not a queue: a subscriber that requests fewer of them than batches are
+   * written receives only the latest count, while the payloads themselves are never dropped.
+   * Payloads are requested only as fast as the writer gets through them.
+   *
+   * @param payloads data to send
+   * @param maxBatchSize maximum number of bytes written at once, usually the socket's MTU
+   * @param lingerTime how long to wait for more payloads before writing an incomplete batch,
+   * zero to write after every payload
+   * @param unit unit of {@code lingerTime}
+   * @return RxJava Observable with number of bytes written per batch
+   */
+  public Flowable<Integer> sendAll(final Flowable<byte[]> payloads, final int maxBatchSize,
+      final long lingerTime, final TimeUnit unit) {
+    if (maxBatchSize <= 0) {
+      throw new InvalidParameterException("Batch size must be positive");
+    }
+
+    return Flowable.create(new FlowableOnSubscribe<Integer>() {
+      @Override public void subscribe(FlowableEmitter<Integer> emitter) {
+        final CoalescingWriter writer = new CoalescingWriter(BluetoothConnection.this, emitter,
+            maxBatchSize, lingerTime, unit, writeScheduler);
+        emitter.setCancellable(writer);
+        payloads.observeOn(writeScheduler).subscribe(writer);
+      }
+    }, BackpressureStrategy.LATEST);
+  }
+
+  /**
+   * Sends array of bytes to bluetooth output stream without blocking the caller. Writing is done
+   * on the connection's writer thread, which writes one payload at a time in subscription order.
+   * Notifies observers with {@link ConnectionClosedException} via {@code onError()} if
+   * disconnected or writing fails.
+   *
+   * @param bytes data to send
+   * @return Completable which completes once data is written and flushed
+   */
+  public Completable sendAsync(final byte[] bytes) {
+    return Completable.fromAction(new Action() {
+      @Override public void run() throws Exception {
+        write(bytes, 0, bytes.length);
+      }
+    }).subscribeOn(writeScheduler);
+  }
+
+  /**
+   * Sends frame to bluetooth output stream without blocking the caller, like {@link
+   * #sendAsync(byte[])} does, and releases the frame once written or failed.
+   *
+   * @param frame data to send, obtained by {@link Frame#obtain(int)}
+   * @return Completable which completes once data is written and flushed
+   */
+  public Completable sendAsync(final Frame frame) {
+    return Completable.fromAction(new Action() {
+      @Override public void run() throws Exception {
+        try {
+          write(frame.array(), 0, frame.length());
+        } finally {
+          frame.release();
+        }
+      }
+    }).subscribeOn(writeScheduler);
+  }
+
+  /**
+   * Sends payloads emitted by the given {@link Flowable} without blocking the caller, requesting
+   * at most {@link #DEFAULT_SEND_QUEUE_SIZE} payloads ahead of the writer. See {@link
+   * #sendAsync(Flowable, int)}.
+   *
+   * @param payloads data to send
+   * @return Completable which completes once all payloads are written
+   */
+  public Completable sendAsync(Flowable<byte[]> payloads) {
+    return sendAsync(payloads, DEFAULT_SEND_QUEUE_SIZE);
+  }
+
+  /**
+   * Sends payloads emitted by the given {@link Flowable} without blocking the caller. Payloads are
+   * queued for the connection's writer thread and no more than {@code queueSize} of them are
+   * requested ahead, so a producer honoring backpressure is slowed down to the speed of the link.
+   * Notifies observers with {@link ConnectionClosedException} via {@code onError()} if
+   * disconnected or writing fails, and with {@link MissingBackpressureException} if the producer
+   * overflows the queue.
+   *
+   * @param payloads data to send
+   * @param queueSize maximum number of payloads waiting to be written
+   * @return Completable which completes once all payloads are written
+   */
+  public Completable sendAsync(Flowable<byte[]> payloads, int queueSize) {
+    if (queueSize <= 0) {
+      throw new InvalidParameterException("Queue size must be positive");
+    }
+
+    return payloads.observeOn(writeScheduler, false, queueSize)
+        .doOnNext(new Consumer<byte[]>() {
+          @Override public void accept(byte[] bytes) throws Exception {
+            write(bytes, 0, bytes.length);
+          }
+        })
+        .ignoreElements();
+  }
+
+  /**
+   * Writes and flushes bytes to bluetooth output stream. Closes the connection if writing fails.
+   *
+   * @throws ConnectionClosedException if disconnected or writing failed
+   */
+  void write(byte[] bytes, int offset, int length) throws ConnectionClosedException {
+    synchronized (writeLock) {
       if (!connected) {
-        closeConnection();
+        throw new ConnectionClosedException("Connection is closed");
+      }
+
+      try {
+        outputStream.write(bytes, offset, length);
+        outputStream.flush();
+      } catch (IOException e) {
+        // Error occurred. Better to close terminate the connection
+        close();
+        throw new ConnectionClosedException("Can't write stream", e);
       }
     }
   }
 
+  private <T> Flowable<T> decodeFrames(final FrameCollector<T> collector) {
+    return observeChunkStream().concatMapDelayError(new Function<byte[], Publisher<T>>() {
+      @Override public Publisher<T> apply(byte[] chunk) throws Exception {
+        return collector.decode(chunk);
+      }
+    }).onErrorResumeNext(new Function<Throwable, Publisher<T>>() {
+      @Override public Publisher<T> apply(Throwable e) {
+        return collector.flush().concatWith(Flowable.<T>error(e));
+      }
+    }).concatWith(Flowable.defer(new Callable<Publisher<T>>() {
+      @Override public Publisher<T> call() {
+        return collector.flush();
+      }
+    }));
+  }
+
   /**
-   * Send string of text to bluetooth output stream.
+   * Return true until the connection is closed, either by {@link #closeConnection()} or because
+   * reading or writing failed.
    *
-   * @param text text to send
-   * @return true if success, false if there was error occurred or disconnected
+   * @return true if connected
    */
-  public boolean send(String text) {
-    byte[] sBytes = text.getBytes();
-    return send(sBytes);
+  public boolean isConnected() {
+    return connected;
+  }
+
+  /**
+   * Observes closing of the connection, either by {@link #closeConnection()} or because reading or
+   * writing failed.
+   *
+   * @return RxJava Completable which completes once the connection is closed
+   */
+  public Completable observeClosed() {
+    return closed.hide();
   }
 
   /**
-   * Close the streams and socket connection.
+   * Close the streams and the transport. Input streams observed at the time complete rather than
+   * fail.
    */
   public void closeConnection() {
+    closeRequested = true;
+    close();
+  }
+
+  private void close() {
     connected = false;
     Utils.close(inputStream);
     Utils.close(outputStream);
-    Utils.close(socket);
+    Utils.close(transport);
+
+    if (readExecutor != null) {
+      readExecutor.shutdown();
+    }
+    writeExecutor.shutdown();
+
+    closed.onComplete();
+  }
+
+  /**
+   * Converts frames decoded from a chunk of bytes into {@link Flowable} of items, decoding directly
+   * from the decoder's buffer.
+   */
+  private abstract static class FrameCollector<T> implements FrameDecoder.Listener {
+    private final FrameDecoder decoder;
+    private List<T> items = new ArrayList<>();
+
+    FrameCollector(FrameDecoder decoder) {
+      this.decoder = decoder;
+    }
+
+    abstract T convert(byte[] buffer, int offset, int length);
+
+    @Override public void onFrame(byte[] buffer, int offset, int length) {
+      items.add(convert(buffer, offset, length));
+    }
+
+    Flowable<T> decode(byte[] chunk) throws IOException {
+      decoder.decode(chunk, 0, chunk.length, this);
+      return drain();
+    }
+
+    Flowable<T> flush() {
+      decoder.flush(this);
+      return drain();
+    }
+
+    private Flowable<T> drain() {
+      switch (items.size()) {
+        case 0:
+          return Flowable.empty();
+        case 1:
+          T item = items.get(0);
+          items.clear();
+          return Flowable.just(item);
+        default:
+          List<T> drained = items;
+          items = new ArrayList<>();
+          return Flowable.fromIterable(drained);
+      }
+    }
+  }
+
+  /** State of the reader, reused between reads of a single subscription. */
+  private static final class ReaderState {
+    final byte[] buffer;
+    volatile boolean released;
+
+    ReaderState(int bufferSize) {
+      buffer = new byte[bufferSize];
+    }
   }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.android.MainThreadDisposable;
+import io.reactivex.annotations.NonNull;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Multiplexes broadcasts between all subscribers interested in the same set of actions. A single
+ * {@link BroadcastReceiver} is registered for a set of actions when the first subscriber arrives
+ * and unregistered when the last one disposes, so the number of subscribers does not add to the
+ * number of receivers the system dispatches every intent to.
+ */
+final class BroadcastHub {
+  private final Context context;
+  private final Map<Set<String>, Observable<Intent>> streams = new HashMap<>();
+
+  BroadcastHub(Context context) {
+    this.context = context;
+  }
+
+  /**
+   * Observes broadcasts with any of the given actions. Subscribers of the same set of actions
+   * share one receiver, registered while at least one of them is subscribed.
+   *
+   * @param actions broadcast actions
+   * @return RxJava Observable with received {@link Intent}
+   */
+  synchronized Observable<Intent> observe(String... actions) {
+    Set<String> key = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(actions)));
+    Observable<Intent> stream = streams.get(key);
+    if (stream == null) {
+      stream = register(key).share();
+      streams.put(key, stream);
+    }
+    return stream;
+  }
+
+  private Observable<Intent> register(Set<String> actions) {
+    final IntentFilter filter = new IntentFilter();
+    for (String action : actions) {
+      filter.addAction(action);
+    }
+
+    return Observable.create(new ObservableOnSubscribe<Intent>() {
+      @Override public void subscribe(@NonNull final ObservableEmitter<Intent> emitter)
+          throws Exception {
+        final BroadcastReceiver receiver = new BroadcastReceiver() {
+          @Override public void onReceive(Context context, Intent intent) {
+            emitter.onNext(intent);
+          }
+        };
+
+        context.registerReceiver(receiver, filter);
+
+        emitter.setDisposable(new MainThreadDisposable() {
+          @Override protected void onDispose() {
+            context.unregisterReceiver(receiver);
+          }
+        });
+      }
+    });
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread safe pool of byte arrays. Arrays are grouped in size classes of powers of two, from
+ * {@link #MIN_SIZE} to {@link #MAX_SIZE} bytes, and each class keeps at most {@link
+ * #MAX_ARRAYS_PER_CLASS} free arrays. Larger requests are allocated and dropped as usual.
+ */
+final class BufferPool {
+
+  static final int MIN_SIZE = 64;
+  static final int MAX_SIZE = 64 * 1024;
+  static final int MAX_ARRAYS_PER_CLASS = 32;
+
+  private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_SIZE);
+  private static final int CLASS_COUNT = Integer.numberOfTrailingZeros(MAX_SIZE) - MIN_SHIFT + 1;
+
+  /** Pool shared by all connections. */
+  static final BufferPool SHARED = new BufferPool();
+
+  private final Queue<byte[]>[] free;
+  private final AtomicInteger[] freeCount;
+
+  BufferPool() {
+    @SuppressWarnings("unchecked")
+    Queue<byte[]>[] queues = (Queue<byte[]>[]) new Queue<?>[CLASS_COUNT];
+    free = queues;
+    freeCount = new AtomicInteger[CLASS_COUNT];
+    for (int i = 0; i < CLASS_COUNT; i++) {
+      free[i] = new ConcurrentLinkedQueue<>();
+      freeCount[i] = new AtomicInteger();
+    }
+  }
+
+  /**
+   * Returns array of at least the given size, either from the pool or newly allocated.
+   */
+  byte[] acquire(int minSize) {
+    if (minSize > MAX_SIZE) {
+      return new byte[minSize];
+    }
+
+    int sizeClass = sizeClass(minSize);
+    byte[] array = free[sizeClass].poll();
+    if (array == null) {
+      return new byte[MIN_SIZE << sizeClass];
+    }
+    freeCount[sizeClass].decrementAndGet();
+    return array;
+  }
+
+  /**
+   * Returns array to the pool. The array must not be used by the caller anymore.
+   */
+  void release(byte[] array) {
+    int size = array.length;
+    if (size < MIN_SIZE || size > MAX_SIZE || Integer.bitCount(size) != 1) {
+      return;
+    }
+
+    int sizeClass = sizeClass(size);
+    if (freeCount[sizeClass].incrementAndGet() > MAX_ARRAYS_PER_CLASS) {
+      freeCount[sizeClass].decrementAndGet();
+      return;
+    }
+    free[sizeClass].offer(array);
+  }
+
+  private static int sizeClass(int size) {
+    if (size <= MIN_SIZE) {
+      return 0;
+    }
+    return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Converts between bytes and strings of a single {@link Charset}, reusing its coders and
+ * buffers between calls. Malformed and unmappable input is replaced, like {@link String} does.
+ * Not thread safe.
+ */
+final class CharsetCodec {
+
+  private final Charset charset;
+
+  private CharsetDecoder decoder;
+  private CharBuffer chars;
+  private ByteBuffer input;
+
+  private CharsetEncoder encoder;
+  private ByteBuffer output;
+
+  CharsetCodec(Charset charset) {
+    this.charset = charset;
+  }
+
+  Charset charset() {
+    return charset;
+  }
+
+  /**
+   * Decodes the given bytes.
+   */
+  String decode(byte[] bytes, int offset, int length) {
+    if (length == 0) {
+      return "";
+    }
+    if (decoder == null) {
+      decoder = charset.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+    if (input == null || input.array() != bytes) {
+      input = ByteBuffer.wrap(bytes);
+    }
+    input.limit(offset + length).position(offset);
+
+    int required = (int) Math.ceil(length * (double) decoder.maxCharsPerByte());
+    if (chars == null || chars.capacity() < required) {
+      chars = CharBuffer.allocate(required);
+    }
+    chars.clear();
+
+    decoder.reset();
+    decoder.decode(input, chars, true);
+    decoder.flush(chars);
+    chars.flip();
+    return chars.toString();
+  }
+
+  /**
+   * Encodes the given text. Returned buffer is reused by the next call and holds the encoded
+   * bytes between its position and limit.
+   */
+  ByteBuffer encode(CharSequence text) {
+    if (encoder == null) {
+      encoder = charset.newEncoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    int required = (int) Math.ceil(text.length() * (double) encoder.maxBytesPerChar());
+    if (output == null || output.capacity() < required) {
+      output = ByteBuffer.allocate(required);
+    }
+    output.clear();
+
+    encoder.reset();
+    encoder.encode(CharBuffer.wrap(text), output, true);
+    encoder.flush(output);
+    output.flip();
+    return output;
+  }
+}
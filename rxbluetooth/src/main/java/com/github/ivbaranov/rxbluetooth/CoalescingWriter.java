@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import io.reactivex.FlowableEmitter;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Cancellable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Subscriber which coalesces received payloads into batches and writes every batch to the
+ * connection at once, reporting number of bytes written to the emitter. A batch is written when
+ * it is full, when the linger time since its first byte has passed, or when payloads terminate.
+ */
+final class CoalescingWriter implements Subscriber<byte[]>, Runnable, Cancellable {
+
+  private final BluetoothConnection connection;
+  private final FlowableEmitter<Integer> emitter;
+  private final long lingerTime;
+  private final TimeUnit unit;
+  private final Scheduler.Worker worker;
+
+  private final int maxBatchSize;
+  private byte[] batch;
+  private int size;
+
+  private volatile Subscription upstream;
+  private volatile boolean done;
+  private Disposable lingerTask;
+
+  CoalescingWriter(BluetoothConnection connection, FlowableEmitter<Integer> emitter,
+      int maxBatchSize, long lingerTime, TimeUnit unit, Scheduler scheduler) {
+    this.connection = connection;
+    this.emitter = emitter;
+    this.lingerTime = lingerTime;
+    this.unit = unit;
+    this.worker = scheduler.createWorker();
+    this.maxBatchSize = maxBatchSize;
+    this.batch = BufferPool.SHARED.acquire(maxBatchSize);
+  }
+
+  @Override public void onSubscribe(Subscription s) {
+    upstream = s;
+    if (done) {
+      s.cancel();
+      return;
+    }
+    s.request(Long.MAX_VALUE);
+  }
+
+  @Override public synchronized void onNext(byte[] payload) {
+    if (done) {
+      return;
+    }
+
+    try {
+      int offset = 0;
+      // Emitting a count may cancel the writer, which releases the batch.
+      while (offset < payload.length && !done) {
+        int remaining = payload.length - offset;
+        if (size == 0 && remaining >= maxBatchSize) {
+          // Nothing queued, write a full batch straight from the payload.
+          connection.write(payload, offset, maxBatchSize);
+          emitter.onNext(maxBatchSize);
+          offset += maxBatchSize;
+          continue;
+        }
+
+        int count = Math.min(maxBatchSize - size, remaining);
+        System.arraycopy(payload, offset, batch, size, count);
+        size += count;
+        offset += count;
+        if (size == maxBatchSize) {
+          writeBatch();
+        }
+      }
+
+      if (size > 0) {
+        if (lingerTime <= 0) {
+          writeBatch();
+        } else if (lingerTask == null) {
+          lingerTask = worker.schedule(this, lingerTime, unit);
+        }
+      }
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  @Override public synchronized void onError(Throwable t) {
+    if (done) {
+      return;
+    }
+
+    try {
+      writeBatch();
+    } catch (IOException ignored) {
+      // Upstream error is reported instead.
+    }
+    terminate();
+    emitter.onError(t);
+  }
+
+  @Override public synchronized void onComplete() {
+    if (done) {
+      return;
+    }
+
+    try {
+      writeBatch();
+    } catch (IOException e) {
+      fail(e);
+      return;
+    }
+    terminate();
+    emitter.onComplete();
+  }
+
+  /** Writes the batch once linger time passed. */
+  @Override public synchronized void run() {
+    lingerTask = null;
+    if (done) {
+      return;
+    }
+
+    try {
+      writeBatch();
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   * Stops writing and releases the batch, waiting for a write in progress to finish.
+   */
+  @Override public synchronized void cancel() {
+    terminate();
+    Subscription s = upstream;
+    if (s != null) {
+      s.cancel();
+    }
+  }
+
+  private void writeBatch() throws IOException {
+    if (lingerTask != null) {
+      lingerTask.dispose();
+      lingerTask = null;
+    }
+    if (size == 0) {
+      return;
+    }
+
+    int written = size;
+    size = 0;
+    connection.write(batch, 0, written);
+    emitter.onNext(written);
+  }
+
+  private void fail(IOException e) {
+    cancel();
+    emitter.onError(e);
+  }
+
+  private void terminate() {
+    done = true;
+    size = 0;
+    worker.dispose();
+    releaseBatch();
+  }
+
+  private void releaseBatch() {
+    if (batch != null) {
+      BufferPool.SHARED.release(batch);
+      batch = null;
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Way of opening an RFCOMM socket to a device: a secure or insecure socket to a service UUID
+ * looked up via SDP, or a socket to a fixed channel. Used by {@link
+ * RxBluetooth#connectAsClient(BluetoothDevice, java.util.List, long,
+ * java.util.concurrent.TimeUnit)} to try several of them.
+ */
+public final class ConnectEndpoint {
+
+  private enum Type {
+    SECURE, INSECURE, CHANNEL
+  }
+
+  private final Type type;
+  private final UUID uuid;
+  private final int channel;
+
+  private ConnectEndpoint(Type type, UUID uuid, int channel) {
+    this.type = type;
+    this.uuid = uuid;
+    this.channel = channel;
+  }
+
+  /**
+   * @param uuid uuid for SDP record
+   * @return endpoint of {@link BluetoothDevice#createRfcommSocketToServiceRecord(UUID)}
+   */
+  public static ConnectEndpoint secure(UUID uuid) {
+    return new ConnectEndpoint(Type.SECURE, uuid, -1);
+  }
+
+  /**
+   * @param uuid uuid for SDP record
+   * @return endpoint of {@link BluetoothDevice#createInsecureRfcommSocketToServiceRecord(UUID)}
+   */
+  public static ConnectEndpoint insecure(UUID uuid) {
+    return new ConnectEndpoint(Type.INSECURE, uuid, -1);
+  }
+
+  /**
+   * Note: createRfcommSocket is not public API and hence this might break in the future.
+   *
+   * @param channel RFCOMM channel to connect to
+   * @return endpoint of the hidden {@code BluetoothDevice#createRfcommSocket(int)}
+   */
+  public static ConnectEndpoint channel(int channel) {
+    return new ConnectEndpoint(Type.CHANNEL, null, channel);
+  }
+
+  BluetoothSocket createSocket(BluetoothDevice device) throws IOException {
+    switch (type) {
+      case SECURE:
+        return device.createRfcommSocketToServiceRecord(uuid);
+      case INSECURE:
+        return device.createInsecureRfcommSocketToServiceRecord(uuid);
+      default:
+        return Utils.createRfcommSocket(device, channel);
+    }
+  }
+
+  @Override public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    ConnectEndpoint that = (ConnectEndpoint) o;
+
+    if (channel != that.channel) return false;
+    if (type != that.type) return false;
+    return !(uuid != null ? !uuid.equals(that.uuid) : that.uuid != null);
+  }
+
+  @Override public int hashCode() {
+    int result = type.hashCode();
+    result = 31 * result + (uuid != null ? uuid.hashCode() : 0);
+    result = 31 * result + channel;
+    return result;
+  }
+
+  @Override public String toString() {
+    return "ConnectEndpoint{" +
+        "type=" + type +
+        ", uuid=" + uuid +
+        ", channel=" + channel +
+        '}';
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import android.bluetooth.BluetoothSocket;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.SingleObserver;
+import io.reactivex.SingleOnSubscribe;
+import io.reactivex.SingleSource;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Cancellable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static android.os.Build.VERSION.SDK_INT;
+
+/**
+ * Races connect attempts: attempts are started one after another, each as soon as the previous one
+ * fails or, when staggered, once the stagger delay has passed since the previous one started. The
+ * first connected socket wins and the remaining attempts are disposed, which closes their sockets.
+ * If every attempt fails, the last error is reported with the others suppressed. A winning socket
+ * whose delivery loses to disposal is closed.
+ */
+final class ConnectRace implements SingleOnSubscribe<BluetoothSocket> {
+  private final List<Single<BluetoothSocket>> attempts;
+  private final long staggerMillis;
+  private final Scheduler scheduler;
+  private final SocketHandoff handoff;
+
+  private ConnectRace(List<Single<BluetoothSocket>> attempts, long staggerMillis,
+      Scheduler scheduler, SocketHandoff handoff) {
+    this.attempts = attempts;
+    this.staggerMillis = staggerMillis;
+    this.scheduler = scheduler;
+    this.handoff = handoff;
+  }
+
+  /**
+   * @param attempts connect attempts in order of preference, subscribed at most once each
+   * @param staggerMillis delay before starting the next attempt while the previous one is still
+   * running, or negative to only start it once the previous one failed
+   * @param scheduler scheduler to connect and stagger on
+   * @return Single with the socket of the winning attempt
+   */
+  static Single<BluetoothSocket> race(final List<Single<BluetoothSocket>> attempts,
+      final long staggerMillis, final Scheduler scheduler) {
+    return Single.defer(new Callable<SingleSource<BluetoothSocket>>() {
+      @Override public SingleSource<BluetoothSocket> call() {
+        SocketHandoff handoff = new SocketHandoff();
+        return handoff.handingOver(
+            Single.create(new ConnectRace(attempts, staggerMillis, scheduler, handoff)));
+      }
+    });
+  }
+
+  @Override public void subscribe(@NonNull SingleEmitter<BluetoothSocket> emitter) {
+    new Race(emitter).startNext();
+  }
+
+  private final class Race {
+    private final SingleEmitter<BluetoothSocket> emitter;
+    private final CompositeDisposable running = new CompositeDisposable();
+    private final Scheduler.Worker worker = scheduler.createWorker();
+    private Disposable timer;
+    private final List<Throwable> errors = new ArrayList<>();
+    private int started;
+    private boolean done;
+
+    Race(SingleEmitter<BluetoothSocket> emitter) {
+      this.emitter = emitter;
+      emitter.setCancellable(new Cancellable() {
+        @Override public void cancel() {
+          finish();
+          handoff.cancel();
+        }
+      });
+    }
+
+    synchronized void startNext() {
+      if (done || started == attempts.size()) {
+        return;
+      }
+
+      if (timer != null) {
+        timer.dispose();
+      }
+      Single<BluetoothSocket> attempt = attempts.get(started++);
+      attempt.subscribeOn(scheduler).subscribe(new SingleObserver<BluetoothSocket>() {
+        private Disposable disposable;
+
+        @Override public void onSubscribe(Disposable d) {
+          disposable = d;
+          running.add(d);
+        }
+
+        @Override public void onSuccess(BluetoothSocket socket) {
+          running.delete(disposable);
+          onConnected(socket);
+        }
+
+        @Override public void onError(Throwable e) {
+          running.delete(disposable);
+          onFailed(e);
+        }
+      });
+
+      if (staggerMillis >= 0 && started < attempts.size()) {
+        timer = worker.schedule(new Runnable() {
+          @Override public void run() {
+            startNext();
+          }
+        }, staggerMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    private void onConnected(BluetoothSocket socket) {
+      synchronized (this) {
+        if (done) {
+          Utils.close(socket);
+          return;
+        }
+        done = true;
+      }
+
+      finish();
+      if (handoff.deliver(socket)) {
+        emitter.onSuccess(socket);
+      }
+    }
+
+    private void onFailed(Throwable e) {
+      synchronized (this) {
+        if (done) {
+          return;
+        }
+        errors.add(e);
+        if (errors.size() < attempts.size()) {
+          startNext();
+          return;
+        }
+        done = true;
+        if (SDK_INT >= 19) {
+          for (Throwable previous : errors) {
+            if (previous != e) {
+              e.addSuppressed(previous);
+            }
+          }
+        }
+      }
+
+      finish();
+      emitter.tryOnError(e);
+    }
+
+    private void finish() {
+      synchronized (this) {
+        done = true;
+        worker.dispose();
+      }
+      running.dispose();
+    }
+  }
+}
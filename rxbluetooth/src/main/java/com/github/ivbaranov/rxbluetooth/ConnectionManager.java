@@ -0,0 +1,466 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+import com.github.ivbaranov.rxbluetooth.exceptions.ConnectionClosedException;
+import io.reactivex.BackpressureOverflowStrategy;
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.BehaviorSubject;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares {@link BluetoothConnection}s to many devices between the parts of an app that talk to
+ * them. Connections are keyed by device address and service UUID: everyone observing the same
+ * key shares one connection, which is opened on demand and closed once nobody observed it for
+ * the idle timeout. At most a fixed number of connects run at once, further ones wait for a slot,
+ * and a connect failing to finish within the connect timeout gives up its slot.
+ *
+ * <p>The manager keeps the input streams of its connections subscribed for as long as it keeps
+ * the connections open, so observers may subscribe to and cancel input streams of a shared
+ * connection without closing it for everyone else. Bytes arriving while no observer subscribed
+ * to an input stream are dropped. Since the input streams are observed as soon as a connection
+ * opens, {@link BluetoothConnection#setInboundBuffer} can't be called on managed connections; set
+ * the buffer with {@link #setInboundBuffer} instead.
+ */
+public final class ConnectionManager {
+
+  /** Connects run at once by {@link #ConnectionManager(RxBluetooth)}. */
+  public static final int DEFAULT_MAX_CONCURRENT_CONNECTS = 2;
+
+  /** Connect timeout used by {@link #ConnectionManager(RxBluetooth)}, in milliseconds. */
+  public static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = 30 * 1000;
+
+  /** Idle timeout used by {@link #ConnectionManager(RxBluetooth)}, in milliseconds. */
+  public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30 * 1000;
+
+  /**
+   * State of a managed connection.
+   */
+  public enum State {
+    DISCONNECTED, CONNECTING, CONNECTED
+  }
+
+  private final RxBluetooth rxBluetooth;
+  private final long connectTimeoutMillis;
+  private final long idleTimeoutMillis;
+  private final ExecutorService connectExecutor;
+  private final Scheduler connectScheduler;
+  private final Map<String, Entry> entries = new HashMap<>();
+  private volatile boolean closed;
+  private int inboundCapacity;
+  private BackpressureOverflowStrategy inboundStrategy;
+
+  /**
+   * Creates a manager running up to {@link #DEFAULT_MAX_CONCURRENT_CONNECTS} connects at once,
+   * giving up connects after {@link #DEFAULT_CONNECT_TIMEOUT_MILLIS} and closing connections after
+   * {@link #DEFAULT_IDLE_TIMEOUT_MILLIS} without observers.
+   *
+   * @param rxBluetooth used to connect to devices
+   */
+  public ConnectionManager(RxBluetooth rxBluetooth) {
+    this(rxBluetooth, DEFAULT_MAX_CONCURRENT_CONNECTS, DEFAULT_CONNECT_TIMEOUT_MILLIS,
+        DEFAULT_IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Creates a manager giving up connects after {@link #DEFAULT_CONNECT_TIMEOUT_MILLIS}.
+   *
+   * @param rxBluetooth used to connect to devices
+   * @param maxConcurrentConnects number of connects run at once
+   * @param idleTimeout time a connection stays open without observers
+   * @param unit unit of {@code idleTimeout}
+   */
+  public ConnectionManager(RxBluetooth rxBluetooth, int maxConcurrentConnects, long idleTimeout,
+      TimeUnit unit) {
+    this(rxBluetooth, maxConcurrentConnects, unit.convert(DEFAULT_CONNECT_TIMEOUT_MILLIS,
+        TimeUnit.MILLISECONDS), idleTimeout, unit);
+  }
+
+  /**
+   * @param rxBluetooth used to connect to devices
+   * @param maxConcurrentConnects number of connects run at once
+   * @param connectTimeout time a connect may take
+   * @param idleTimeout time a connection stays open without observers
+   * @param unit unit of {@code connectTimeout} and {@code idleTimeout}
+   */
+  public ConnectionManager(RxBluetooth rxBluetooth, int maxConcurrentConnects,
+      long connectTimeout, long idleTimeout, TimeUnit unit) {
+    if (maxConcurrentConnects <= 0) {
+      throw new InvalidParameterException("Max concurrent connects must be positive");
+    }
+    if (connectTimeout <= 0) {
+      throw new InvalidParameterException("Connect timeout must be positive");
+    }
+    if (idleTimeout < 0) {
+      throw new InvalidParameterException("Idle timeout can't be negative");
+    }
+
+    this.rxBluetooth = rxBluetooth;
+    this.connectTimeoutMillis = unit.toMillis(connectTimeout);
+    this.idleTimeoutMillis = unit.toMillis(idleTimeout);
+    this.connectExecutor =
+        Utils.newThreadExecutor("RxBluetooth-connect", maxConcurrentConnects);
+    this.connectScheduler = Schedulers.from(connectExecutor);
+  }
+
+  /**
+   * Sets the inbound buffer of connections opened from now on. See {@link
+   * BluetoothConnection#setInboundBuffer}.
+   *
+   * @param capacity maximum number of chunks waiting for subscribers
+   * @param strategy what to do when the buffer is full
+   */
+  public synchronized void setInboundBuffer(int capacity, BackpressureOverflowStrategy strategy) {
+    if (capacity <= 0) {
+      throw new InvalidParameterException("Capacity must be positive");
+    }
+
+    inboundCapacity = capacity;
+    inboundStrategy = strategy;
+  }
+
+  /**
+   * Observes connection to the service of the device, connecting unless a live connection is
+   * already shared. The connection is kept open while at least one observer is subscribed and
+   * for the idle timeout afterwards. Completes once the connection is closed, and notifies
+   * observers with {@link java.io.IOException} via {@code onError()} if connecting fails or times
+   * out, and with {@link IllegalStateException} if the manager is closed.
+   *
+   * @param device bluetooth device to connect
+   * @param uuid uuid for SDP record
+   * @return RxJava Observable with the shared {@link BluetoothConnection}
+   */
+  public Observable<BluetoothConnection> observeConnection(final BluetoothDevice device,
+      final UUID uuid) {
+    return Observable.create(new ObservableOnSubscribe<BluetoothConnection>() {
+      @Override
+      public void subscribe(@NonNull final ObservableEmitter<BluetoothConnection> emitter) {
+        final Entry entry;
+        final Single<BluetoothConnection> connection;
+        synchronized (ConnectionManager.this) {
+          if (closed) {
+            emitter.onError(new IllegalStateException("Connection manager is closed"));
+            return;
+          }
+          entry = entry(device, uuid);
+          entry.acquire();
+          connection = entry.connection();
+        }
+
+        final Disposable disposable = connection.flatMapObservable(
+            new Function<BluetoothConnection, Observable<BluetoothConnection>>() {
+              @Override public Observable<BluetoothConnection> apply(BluetoothConnection c) {
+                return c.observeClosed().<BluetoothConnection>toObservable().startWith(c);
+              }
+            }).subscribe(new Consumer<BluetoothConnection>() {
+          @Override public void accept(BluetoothConnection c) {
+            emitter.onNext(c);
+          }
+        }, new Consumer<Throwable>() {
+          @Override public void accept(Throwable e) {
+            emitter.onError(e);
+          }
+        }, new Action() {
+          @Override public void run() {
+            emitter.onComplete();
+          }
+        });
+
+        emitter.setCancellable(new Cancellable() {
+          @Override public void cancel() {
+            disposable.dispose();
+            synchronized (ConnectionManager.this) {
+              entry.release();
+            }
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Observes state of the connection to the service of the device. The current state is emitted
+   * first. Notifies observers with {@link IllegalStateException} via {@code onError()} if the
+   * manager is closed.
+   *
+   * @param device bluetooth device
+   * @param uuid uuid for SDP record
+   * @return RxJava Observable with {@link State}
+   */
+  public Observable<State> observeState(final BluetoothDevice device, final UUID uuid) {
+    return Observable.create(new ObservableOnSubscribe<State>() {
+      @Override public void subscribe(@NonNull final ObservableEmitter<State> emitter) {
+        final Entry entry;
+        synchronized (ConnectionManager.this) {
+          if (closed) {
+            emitter.onError(new IllegalStateException("Connection manager is closed"));
+            return;
+          }
+          entry = entry(device, uuid);
+          entry.watchers++;
+        }
+
+        final Disposable disposable = entry.state.distinctUntilChanged()
+            .subscribe(new Consumer<State>() {
+              @Override public void accept(State state) {
+                emitter.onNext(state);
+              }
+            });
+
+        emitter.setCancellable(new Cancellable() {
+          @Override public void cancel() {
+            disposable.dispose();
+            synchronized (ConnectionManager.this) {
+              entry.watchers--;
+              entry.evictIfUnused();
+            }
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * @return live connections, including idle ones
+   */
+  public synchronized List<BluetoothConnection> getConnections() {
+    List<BluetoothConnection> connections = new ArrayList<>();
+    for (Entry entry : entries.values()) {
+      if (entry.connection != null && entry.connection.isConnected()) {
+        connections.add(entry.connection);
+      }
+    }
+    return connections;
+  }
+
+  /**
+   * Closes all connections, idle or not, and stops the connect threads. The manager can't be used
+   * afterwards: connects still waiting for a slot fail, and new observers are notified with
+   * {@link IllegalStateException}.
+   */
+  public synchronized void close() {
+    closed = true;
+    for (Entry entry : entries.values()) {
+      entry.close();
+    }
+    entries.clear();
+    connectExecutor.shutdown();
+  }
+
+  private Entry entry(BluetoothDevice device, UUID uuid) {
+    String key = device.getAddress() + '/' + uuid;
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      entry = new Entry(key, device, uuid);
+      entries.put(key, entry);
+    }
+    return entry;
+  }
+
+  /**
+   * Connection to one service of one device. Guarded by the manager's lock. Evicted once it has
+   * neither a connection nor observers.
+   */
+  private final class Entry {
+    final String key;
+    final BluetoothDevice device;
+    final UUID uuid;
+    final BehaviorSubject<State> state = BehaviorSubject.createDefault(State.DISCONNECTED);
+
+    BluetoothConnection connection;
+    Disposable inbound;
+    Single<BluetoothConnection> pending;
+    int observers;
+    int watchers;
+    Disposable idleTimer;
+
+    Entry(String key, BluetoothDevice device, UUID uuid) {
+      this.key = key;
+      this.device = device;
+      this.uuid = uuid;
+    }
+
+    void acquire() {
+      observers++;
+      if (idleTimer != null) {
+        idleTimer.dispose();
+        idleTimer = null;
+      }
+    }
+
+    void release() {
+      if (--observers == 0 && pending == null) {
+        scheduleIdleClose();
+        evictIfUnused();
+      }
+    }
+
+    void evictIfUnused() {
+      if (observers == 0 && watchers == 0 && connection == null && pending == null
+          && entries.get(key) == this) {
+        entries.remove(key);
+      }
+    }
+
+    /**
+     * Returns the live connection, the connect in flight, or starts a new connect.
+     */
+    Single<BluetoothConnection> connection() {
+      if (connection != null && connection.isConnected()) {
+        return Single.just(connection);
+      }
+      if (pending == null) {
+        state.onNext(State.CONNECTING);
+        pending = Single.defer(new Callable<Single<BluetoothSocket>>() {
+          @Override public Single<BluetoothSocket> call() throws Exception {
+            // Connects waiting for a slot when the manager closed don't connect anymore.
+            if (closed) {
+              throw new ConnectionClosedException("Connection manager is closed");
+            }
+            return rxBluetooth.connectAsClient(device, uuid, connectTimeoutMillis,
+                TimeUnit.MILLISECONDS);
+          }
+        })
+            .subscribeOn(connectScheduler)
+            .map(new Function<BluetoothSocket, BluetoothConnection>() {
+              @Override public BluetoothConnection apply(BluetoothSocket socket)
+                  throws Exception {
+                return new BluetoothConnection(socket);
+              }
+            })
+            .doOnSuccess(new Consumer<BluetoothConnection>() {
+              @Override public void accept(BluetoothConnection c) {
+                onConnected(c);
+              }
+            })
+            .doOnError(new Consumer<Throwable>() {
+              @Override public void accept(Throwable e) {
+                onConnectFailed();
+              }
+            })
+            .cache();
+        // Connect even if every observer leaves before it finishes, so the slot isn't wasted.
+        Completable.fromSingle(pending).onErrorComplete().subscribe();
+      }
+      return pending;
+    }
+
+    void onConnected(final BluetoothConnection c) {
+      synchronized (ConnectionManager.this) {
+        pending = null;
+        if (closed) {
+          c.closeConnection();
+          state.onNext(State.DISCONNECTED);
+          return;
+        }
+        connection = c;
+        if (inboundCapacity > 0) {
+          c.setInboundBuffer(inboundCapacity, inboundStrategy);
+        }
+        // Keeps the shared reader running while observers come and go, see the class javadoc.
+        inbound = c.observeChunkStream().subscribe(new Consumer<byte[]>() {
+          @Override public void accept(byte[] chunk) {
+            // Observers subscribe to input streams themselves.
+          }
+        }, new Consumer<Throwable>() {
+          @Override public void accept(Throwable e) {
+            // Reported to observers by the connection closing.
+          }
+        });
+        state.onNext(State.CONNECTED);
+        if (observers == 0) {
+          scheduleIdleClose();
+        }
+      }
+
+      c.observeClosed().subscribe(new Action() {
+        @Override public void run() {
+          onClosed(c);
+        }
+      });
+    }
+
+    void onConnectFailed() {
+      synchronized (ConnectionManager.this) {
+        pending = null;
+        state.onNext(State.DISCONNECTED);
+        evictIfUnused();
+      }
+    }
+
+    void onClosed(BluetoothConnection c) {
+      synchronized (ConnectionManager.this) {
+        if (connection == c) {
+          connection = null;
+          inbound.dispose();
+          inbound = null;
+          state.onNext(State.DISCONNECTED);
+          evictIfUnused();
+        }
+      }
+    }
+
+    void scheduleIdleClose() {
+      final BluetoothConnection idle = connection;
+      if (idle == null) {
+        return;
+      }
+
+      idleTimer = Schedulers.computation().scheduleDirect(new Runnable() {
+        @Override public void run() {
+          synchronized (ConnectionManager.this) {
+            if (observers > 0 || connection != idle) {
+              return;
+            }
+            idleTimer = null;
+          }
+          idle.closeConnection();
+        }
+      }, idleTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void close() {
+      if (idleTimer != null) {
+        idleTimer.dispose();
+      }
+      if (connection != null) {
+        connection.closeConnection();
+      }
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import android.bluetooth.BluetoothDevice;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Dispatches events to observers of the device they concern. Observers are indexed by device
+ * address, so an event is handed only to the observers of its device instead of being filtered
+ * by every observer of every device. The source is subscribed once, while at least one observer
+ * of any device is subscribed.
+ *
+ * @param <T> type of events
+ */
+final class DeviceDispatcher<T> {
+  private final Observable<T> source;
+  private final Function<T, BluetoothDevice> deviceOf;
+  private final Map<String, List<ObservableEmitter<T>>> observers = new HashMap<>();
+  private int observerCount;
+  private Disposable subscription;
+
+  /**
+   * @param source events of all devices
+   * @param deviceOf returns the device an event concerns, or null if it concerns none
+   */
+  DeviceDispatcher(Observable<T> source, Function<T, BluetoothDevice> deviceOf) {
+    this.source = source;
+    this.deviceOf = deviceOf;
+  }
+
+  /**
+   * Observes events of the device.
+   *
+   * @param device bluetooth device
+   * @return RxJava Observable with events concerning the device
+   */
+  Observable<T> observe(BluetoothDevice device) {
+    final String address = device.getAddress();
+    return Observable.create(new ObservableOnSubscribe<T>() {
+      @Override public void subscribe(@NonNull final ObservableEmitter<T> emitter) {
+        add(address, emitter);
+        emitter.setCancellable(new Cancellable() {
+          @Override public void cancel() {
+            remove(address, emitter);
+          }
+        });
+      }
+    });
+  }
+
+  private synchronized void add(String address, ObservableEmitter<T> emitter) {
+    List<ObservableEmitter<T>> list = observers.get(address);
+    if (list == null) {
+      list = new CopyOnWriteArrayList<>();
+      observers.put(address, list);
+    }
+    list.add(emitter);
+
+    if (observerCount++ == 0) {
+      subscription = source.subscribe(new Consumer<T>() {
+        @Override public void accept(T event) throws Exception {
+          dispatch(event);
+        }
+      }, new Consumer<Throwable>() {
+        @Override public void accept(Throwable e) {
+          fail(e);
+        }
+      });
+    }
+  }
+
+  private synchronized void remove(String address, ObservableEmitter<T> emitter) {
+    List<ObservableEmitter<T>> list = observers.get(address);
+    if (list == null || !list.remove(emitter)) {
+      return;
+    }
+    if (list.isEmpty()) {
+      observers.remove(address);
+    }
+
+    if (--observerCount == 0) {
+      subscription.dispose();
+      subscription = null;
+    }
+  }
+
+  private void dispatch(T event) throws Exception {
+    BluetoothDevice device = deviceOf.apply(event);
+    if (device == null) {
+      return;
+    }
+
+    List<ObservableEmitter<T>> list;
+    synchronized (this) {
+      list = observers.get(device.getAddress());
+    }
+    if (list != null) {
+      for (ObservableEmitter<T> emitter : list) {
+        emitter.onNext(event);
+      }
+    }
+  }
+
+  private void fail(Throwable e) {
+    List<ObservableEmitter<T>> all = new ArrayList<>();
+    synchronized (this) {
+      for (List<ObservableEmitter<T>> list : observers.values()) {
+        all.addAll(list);
+      }
+    }
+    for (ObservableEmitter<T> emitter : all) {
+      emitter.tryOnError(e);
+    }
+  }
+}
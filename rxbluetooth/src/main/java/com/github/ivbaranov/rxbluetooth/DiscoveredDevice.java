@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import android.bluetooth.BluetoothClass;
+import android.bluetooth.BluetoothDevice;
+import android.support.annotation.Nullable;
+import com.github.ivbaranov.rxbluetooth.events.DeviceFoundEvent;
+
+/**
+ * Snapshot of a device held by {@link DiscoveryCache}: the latest name and class reported for it,
+ * its smoothed signal strength and when it was seen.
+ */
+public final class DiscoveredDevice {
+
+  private BluetoothDevice bluetoothDevice;
+  private String name;
+  private BluetoothClass bluetoothClass;
+  private int rssi;
+  private long firstSeen;
+  private long lastSeen;
+  private int sightings;
+
+  public DiscoveredDevice(BluetoothDevice bluetoothDevice, @Nullable String name,
+      @Nullable BluetoothClass bluetoothClass, int rssi, long firstSeen, long lastSeen,
+      int sightings) {
+    this.bluetoothDevice = bluetoothDevice;
+    this.name = name;
+    this.bluetoothClass = bluetoothClass;
+    this.rssi = rssi;
+    this.firstSeen = firstSeen;
+    this.lastSeen = lastSeen;
+    this.sightings = sightings;
+  }
+
+  public BluetoothDevice getBluetoothDevice() {
+    return bluetoothDevice;
+  }
+
+  @Nullable public String getName() {
+    return name;
+  }
+
+  @Nullable public BluetoothClass getBluetoothClass() {
+    return bluetoothClass;
+  }
+
+  /**
+   * @return smoothed signal strength in dBm, or {@link DeviceFoundEvent#RSSI_UNKNOWN}
+   */
+  public int getRssi() {
+    return rssi;
+  }
+
+  /**
+   * @return time the device was first seen, in {@link android.os.SystemClock#elapsedRealtime()}
+   * milliseconds
+   */
+  public long getFirstSeen() {
+    return firstSeen;
+  }
+
+  /**
+   * @return time the device was last seen, in {@link android.os.SystemClock#elapsedRealtime()}
+   * milliseconds
+   */
+  public long getLastSeen() {
+    return lastSeen;
+  }
+
+  /**
+   * @return number of broadcasts received for the device since it was first seen
+   */
+  public int getSightings() {
+    return sightings;
+  }
+
+  @Override public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    DiscoveredDevice that = (DiscoveredDevice) o;
+
+    if (rssi != that.rssi) return false;
+    if (firstSeen != that.firstSeen) return false;
+    if (lastSeen != that.lastSeen) return false;
+    if (sightings != that.sightings) return false;
+    if (bluetoothDevice != null ? !bluetoothDevice.equals(that.bluetoothDevice)
+        : that.bluetoothDevice != null) {
+      return false;
+    }
+    if (name != null ? !name.equals(that.name) : that.name != null) return false;
+    return !(bluetoothClass != null ? !bluetoothClass.equals(that.bluetoothClass)
+        : that.bluetoothClass != null);
+  }
+
+  @Override public int hashCode() {
+    int result = bluetoothDevice != null ? bluetoothDevice.hashCode() : 0;
+    result = 31 * result + (name != null ? name.hashCode() : 0);
+    result = 31 * result + (bluetoothClass != null ? bluetoothClass.hashCode() : 0);
+    result = 31 * result + rssi;
+    result = 31 * result + (int) (firstSeen ^ (firstSeen >>> 32));
+    result = 31 * result + (int) (lastSeen ^ (lastSeen >>> 32));
+    result = 31 * result + sightings;
+    return result;
+  }
+
+  @Override public String toString() {
+    return "DiscoveredDevice{"
+        + "bluetoothDevice="
+        + bluetoothDevice
+        + ", name="
+        + name
+        + ", bluetoothClass="
+        + bluetoothClass
+        + ", rssi="
+        + rssi
+        + ", firstSeen="
+        + firstSeen
+        + ", lastSeen="
+        + lastSeen
+        + ", sightings="
+        + sightings
+        + '}';
+  }
+}
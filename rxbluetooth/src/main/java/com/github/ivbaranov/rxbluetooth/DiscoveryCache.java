@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import android.bluetooth.BluetoothClass;
+import android.bluetooth.BluetoothDevice;
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+import com.github.ivbaranov.rxbluetooth.events.DeviceFoundEvent;
+import io.reactivex.Observable;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of devices found while discovering, keyed by MAC address. Every broadcast refreshes the
+ * device's last-seen time and folds its signal strength into an exponentially weighted moving
+ * average; devices not seen for longer than the time-to-live are evicted.
+ *
+ * <p>The cache is fed by a single shared subscription to the events it was created with, active
+ * while {@link #observeNewDevices()} or {@link #observeSnapshots(long, TimeUnit)} is subscribed:
+ * <pre>
+ * DiscoveryCache cache = new DiscoveryCache(rxBluetooth.observeDeviceFound());
+ * cache.observeNewDevices().subscribe(...);
+ * </pre>
+ */
+public final class DiscoveryCache {
+
+  /** Time-to-live used by {@link #DiscoveryCache(Observable)}, in milliseconds. */
+  public static final long DEFAULT_TTL_MILLIS = 60 * 1000;
+
+  /** Weight of the latest reading used by {@link #DiscoveryCache(Observable)}. */
+  public static final float DEFAULT_RSSI_SMOOTHING = 0.25f;
+
+  private static final Comparator<DiscoveredDevice> STRONGEST_FIRST =
+      new Comparator<DiscoveredDevice>() {
+        @Override public int compare(DiscoveredDevice a, DiscoveredDevice b) {
+          return a.getRssi() < b.getRssi() ? 1 : (a.getRssi() == b.getRssi() ? 0 : -1);
+        }
+      };
+
+  private final long ttlMillis;
+  private final float rssiSmoothing;
+  private final Map<String, Entry> entries = new HashMap<>();
+  private final Observable<DeviceFoundEvent> newDevices;
+  private long lastEviction;
+
+  /**
+   * Creates a cache evicting devices not seen for {@link #DEFAULT_TTL_MILLIS} and smoothing
+   * signal strength with {@link #DEFAULT_RSSI_SMOOTHING}.
+   *
+   * @param events devices found, usually {@link RxBluetooth#observeDeviceFound()}
+   */
+  public DiscoveryCache(Observable<DeviceFoundEvent> events) {
+    this(events, DEFAULT_TTL_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_RSSI_SMOOTHING);
+  }
+
+  /**
+   * @param events devices found, usually {@link RxBluetooth#observeDeviceFound()}
+   * @param ttl time after which a device that was not seen again is evicted
+   * @param unit unit of {@code ttl}
+   * @param rssiSmoothing weight of the latest reading in the smoothed signal strength, from 0
+   * (exclusive) to 1, where 1 disables smoothing
+   */
+  public DiscoveryCache(Observable<DeviceFoundEvent> events, long ttl, TimeUnit unit,
+      float rssiSmoothing) {
+    if (ttl <= 0) {
+      throw new InvalidParameterException("Time-to-live must be positive");
+    }
+    if (!(rssiSmoothing > 0 && rssiSmoothing <= 1)) {
+      throw new InvalidParameterException("RSSI smoothing must be in (0, 1]");
+    }
+
+    this.ttlMillis = unit.toMillis(ttl);
+    this.rssiSmoothing = rssiSmoothing;
+    this.newDevices = events.filter(new Predicate<DeviceFoundEvent>() {
+      @Override public boolean test(DeviceFoundEvent event) {
+        return update(event);
+      }
+    }).share();
+  }
+
+  /**
+   * Observes devices not in the cache yet: the first broadcast of every device, or the first one
+   * after it was evicted. Repeated broadcasts only update the cache.
+   *
+   * @return RxJava Observable with {@link DeviceFoundEvent} of new devices
+   */
+  public Observable<DeviceFoundEvent> observeNewDevices() {
+    return newDevices;
+  }
+
+  /**
+   * Observes snapshots of the cache, taken right away and then periodically.
+   *
+   * @param period time between snapshots
+   * @param unit unit of {@code period}
+   * @return RxJava Observable with devices in the cache, strongest signal first
+   */
+  public Observable<List<DiscoveredDevice>> observeSnapshots(long period, TimeUnit unit) {
+    return Observable.merge(newDevices.ignoreElements().<List<DiscoveredDevice>>toObservable(),
+        Observable.interval(0, period, unit).map(new Function<Long, List<DiscoveredDevice>>() {
+          @Override public List<DiscoveredDevice> apply(Long tick) {
+            return snapshot();
+          }
+        }));
+  }
+
+  /**
+   * @param address MAC address of the device
+   * @return the cached device, or null if it is not in the cache
+   */
+  @Nullable public synchronized DiscoveredDevice get(String address) {
+    Entry entry = entries.get(address);
+    if (entry == null || isExpired(entry, SystemClock.elapsedRealtime())) {
+      return null;
+    }
+    return entry.toDiscoveredDevice();
+  }
+
+  /**
+   * Evicts expired devices and returns the remaining ones.
+   *
+   * @return unmodifiable list of devices in the cache, strongest signal first
+   */
+  public synchronized List<DiscoveredDevice> snapshot() {
+    evictExpired(SystemClock.elapsedRealtime());
+
+    List<DiscoveredDevice> devices = new ArrayList<>(entries.size());
+    for (Entry entry : entries.values()) {
+      devices.add(entry.toDiscoveredDevice());
+    }
+    Collections.sort(devices, STRONGEST_FIRST);
+    return Collections.unmodifiableList(devices);
+  }
+
+  /**
+   * @return number of devices in the cache, including expired ones not evicted yet
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Removes all devices, so every device is new again when it is next seen.
+   */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Folds the event into the cache.
+   *
+   * @return true if the device was not in the cache
+   */
+  synchronized boolean update(DeviceFoundEvent event) {
+    long now = event.getTimestamp();
+    if (now - lastEviction >= ttlMillis) {
+      evictExpired(now);
+      lastEviction = now;
+    }
+
+    String address = event.getBluetoothDevice().getAddress();
+    Entry entry = entries.get(address);
+    if (entry == null || isExpired(entry, now)) {
+      entries.put(address, new Entry(event));
+      return true;
+    }
+
+    entry.update(event, rssiSmoothing);
+    return false;
+  }
+
+  private boolean isExpired(Entry entry, long now) {
+    return now - entry.lastSeen > ttlMillis;
+  }
+
+  private void evictExpired(long now) {
+    for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+      if (isExpired(iterator.next(), now)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  private static final class Entry {
+    private BluetoothDevice device;
+    private String name;
+    private BluetoothClass bluetoothClass;
+    private float rssi;
+    private final long firstSeen;
+    private long lastSeen;
+    private int sightings;
+
+    Entry(DeviceFoundEvent event) {
+      device = event.getBluetoothDevice();
+      name = event.getName();
+      bluetoothClass = event.getBluetoothClass();
+      rssi = event.getRssi();
+      firstSeen = event.getTimestamp();
+      lastSeen = firstSeen;
+      sightings = 1;
+    }
+
+    void update(DeviceFoundEvent event, float smoothing) {
+      device = event.getBluetoothDevice();
+      if (event.getName() != null) {
+        name = event.getName();
+      }
+      if (event.getBluetoothClass() != null) {
+        bluetoothClass = event.getBluetoothClass();
+      }
+      if (event.getRssi() != DeviceFoundEvent.RSSI_UNKNOWN) {
+        rssi = rssi == DeviceFoundEvent.RSSI_UNKNOWN ? event.getRssi()
+            : rssi + smoothing * (event.getRssi() - rssi);
+      }
+      lastSeen = Math.max(lastSeen, event.getTimestamp());
+      sightings++;
+    }
+
+    DiscoveredDevice toDiscoveredDevice() {
+      return new DiscoveredDevice(device, name, bluetoothClass, Math.round(rssi), firstSeen,
+          lastSeen, sightings);
+    }
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import android.bluetooth.BluetoothAdapter;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps discovery running for as long as it is started, restarting every inquiry as soon as the
+ * previous one finishes. Discovery alternates between active and idle periods when both are
+ * positive, and is cancelled while a connect is in flight, resuming with a fresh active period
+ * once the last connect finishes.
+ */
+final class DiscoverySession {
+  private final BluetoothAdapter bluetoothAdapter;
+  private final long activeMillis;
+  private final long idleMillis;
+  private final Scheduler.Worker worker;
+
+  private boolean started;
+  private boolean active;
+  private boolean paused;
+  private Disposable timer;
+  private int generation;
+
+  /**
+   * @param bluetoothAdapter adapter to discover with
+   * @param activeMillis length of active periods, or 0 to discover continuously
+   * @param idleMillis length of idle periods, or 0 to discover continuously
+   * @param worker worker running the duty cycle, disposed when the session is stopped
+   */
+  DiscoverySession(BluetoothAdapter bluetoothAdapter, long activeMillis, long idleMillis,
+      Scheduler.Worker worker) {
+    this.bluetoothAdapter = bluetoothAdapter;
+    this.activeMillis = activeMillis;
+    this.idleMillis = idleMillis;
+    this.worker = worker;
+  }
+
+  synchronized void start() {
+    started = true;
+    startActive();
+  }
+
+  synchronized void stop() {
+    started = false;
+    active = false;
+    cancelTimer();
+    worker.dispose();
+    bluetoothAdapter.cancelDiscovery();
+  }
+
+  /**
+   * Restarts discovery once an inquiry finishes during an active period.
+   */
+  synchronized void onDiscoveryFinished() {
+    if (started && active && !paused && !bluetoothAdapter.isDiscovering()) {
+      bluetoothAdapter.startDiscovery();
+    }
+  }
+
+  /**
+   * Pauses discovery while connecting and starts a new active period once done.
+   *
+   * @param connecting true if at least one connect is in flight
+   */
+  synchronized void onConnecting(boolean connecting) {
+    if (paused == connecting) {
+      return;
+    }
+
+    paused = connecting;
+    if (!started) {
+      return;
+    }
+
+    if (connecting) {
+      active = false;
+      cancelTimer();
+      bluetoothAdapter.cancelDiscovery();
+    } else {
+      startActive();
+    }
+  }
+
+  private void startActive() {
+    if (!started || paused) {
+      return;
+    }
+
+    active = true;
+    if (!bluetoothAdapter.isDiscovering()) {
+      bluetoothAdapter.startDiscovery();
+    }
+
+    if (activeMillis > 0 && idleMillis > 0) {
+      schedule(new Runnable() {
+        @Override public void run() {
+          startIdle();
+        }
+      }, activeMillis);
+    }
+  }
+
+  private void startIdle() {
+    if (!started || paused) {
+      return;
+    }
+
+    active = false;
+    bluetoothAdapter.cancelDiscovery();
+
+    schedule(new Runnable() {
+      @Override public void run() {
+        startActive();
+      }
+    }, idleMillis);
+  }
+
+  /**
+   * Runs the task under the session's lock, unless another task was scheduled or the timer was
+   * cancelled in the meantime.
+   */
+  private void schedule(final Runnable task, long delayMillis) {
+    cancelTimer();
+    final int scheduled = generation;
+    timer = worker.schedule(new Runnable() {
+      @Override public void run() {
+        synchronized (DiscoverySession.this) {
+          if (generation == scheduled) {
+            task.run();
+          }
+        }
+      }
+    }, delayMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private void cancelTimer() {
+    generation++;
+    if (timer != null) {
+      timer.dispose();
+      timer = null;
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bytes held in an array borrowed from a pool shared by all connections. The array may be larger
+ * than the frame, only the first {@link #length()} bytes are valid.
+ *
+ * <p>Call {@link #release()} once the frame is not needed anymore to give the array back, so
+ * that later frames reuse it. A frame that is never released is simply garbage collected. A
+ * released frame must not be used again, neither may its array.
+ *
+ * <p>Only frames are pooled. Chunks read from a connection are still copied into new arrays,
+ * since they are shared by all input streams of the connection, see {@link
+ * BluetoothConnection#observeChunkStream(int)}.
+ */
+public final class Frame {
+
+  /** Cleared on release, atomically so that racing releases give the array back only once. */
+  private final AtomicReference<byte[]> array;
+  private int length;
+
+  Frame(byte[] array, int length) {
+    this.array = new AtomicReference<>(array);
+    this.length = length;
+  }
+
+  /**
+   * Obtains a frame with room for at least the given number of bytes, to be filled and sent with
+   * {@link BluetoothConnection#sendAsync(Frame)}.
+   *
+   * @param capacity required capacity
+   * @return frame with length equal to capacity
+   */
+  public static Frame obtain(int capacity) {
+    if (capacity < 0) {
+      throw new InvalidParameterException("Capacity can't be negative");
+    }
+    return new Frame(BufferPool.SHARED.acquire(capacity), capacity);
+  }
+
+  /**
+   * Returns backing array, holding the frame from index 0 to {@link #length()}.
+   *
+   * @return backing array
+   */
+  public byte[] array() {
+    return checkNotReleased();
+  }
+
+  /**
+   * Returns number of valid bytes.
+   *
+   * @return frame length
+   */
+  public int length() {
+    return length;
+  }
+
+  /**
+   * Sets number of valid bytes.
+   *
+   * @param length frame length, at most the length of the backing array
+   */
+  public void setLength(int length) {
+    if (length < 0 || length > checkNotReleased().length) {
+      throw new InvalidParameterException("Length out of array bounds");
+    }
+    this.length = length;
+  }
+
+  /**
+   * Copies the frame to a new array of exactly its length.
+   *
+   * @return copy of the frame
+   */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(checkNotReleased(), length);
+  }
+
+  /**
+   * Gives the backing array back to the pool. Releasing a frame twice has no effect, even if done
+   * concurrently by several threads.
+   */
+  public void release() {
+    byte[] released = array.getAndSet(null);
+    if (released != null) {
+      BufferPool.SHARED.release(released);
+    }
+  }
+
+  private byte[] checkNotReleased() {
+    byte[] array = this.array.get();
+    if (array == null) {
+      throw new IllegalStateException("Frame is released");
+    }
+    return array;
+  }
+
+  @Override public String toString() {
+    return "Frame{" +
+        "length=" + length +
+        ", released=" + (array.get() == null) +
+        '}';
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothProfile;
+import android.content.Context;
+import com.github.ivbaranov.rxbluetooth.events.ServiceEvent;
+import com.github.ivbaranov.rxbluetooth.exceptions.GetProfileProxyException;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.BehaviorSubject;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares profile proxies between observers. The proxy of a profile is obtained once, when the
+ * first observer subscribes, and closed once the last observer has been gone for the grace
+ * period, so observers coming and going in quick succession don't bind the profile service
+ * again.
+ */
+final class ProfileProxyCache {
+  private final BluetoothAdapter bluetoothAdapter;
+  private final Context context;
+  private final long gracePeriodMillis;
+  private final Map<Integer, Entry> entries = new HashMap<>();
+
+  ProfileProxyCache(BluetoothAdapter bluetoothAdapter, Context context, long gracePeriodMillis) {
+    this.bluetoothAdapter = bluetoothAdapter;
+    this.context = context;
+    this.gracePeriodMillis = gracePeriodMillis;
+  }
+
+  /**
+   * Observes connection to the shared proxy of the profile. The latest {@link ServiceEvent} is
+   * emitted to observers subscribing after the proxy connected.
+   *
+   * @param profile bluetooth profile
+   * @return RxJava Observable with {@link ServiceEvent}
+   */
+  Observable<ServiceEvent> observe(final int profile) {
+    return Observable.create(new ObservableOnSubscribe<ServiceEvent>() {
+      @Override public void subscribe(@NonNull final ObservableEmitter<ServiceEvent> emitter) {
+        final Entry entry;
+        synchronized (ProfileProxyCache.this) {
+          entry = entry(profile);
+          if (entry == null) {
+            emitter.onError(new GetProfileProxyException());
+            return;
+          }
+          entry.acquire();
+        }
+
+        final Disposable disposable = entry.events.subscribe(new Consumer<ServiceEvent>() {
+          @Override public void accept(ServiceEvent event) {
+            emitter.onNext(event);
+          }
+        });
+
+        emitter.setCancellable(new Cancellable() {
+          @Override public void cancel() {
+            disposable.dispose();
+            synchronized (ProfileProxyCache.this) {
+              entry.release();
+            }
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Returns the entry of the profile, obtaining its proxy if there is none, or null if the proxy
+   * can't be obtained.
+   */
+  private Entry entry(int profile) {
+    Entry entry = entries.get(profile);
+    if (entry == null) {
+      entry = new Entry(profile);
+      if (!bluetoothAdapter.getProfileProxy(context, entry, profile)) {
+        return null;
+      }
+      entries.put(profile, entry);
+    }
+    return entry;
+  }
+
+  /**
+   * State of a shared proxy. Guarded by the enclosing {@link ProfileProxyCache}.
+   */
+  private final class Entry implements BluetoothProfile.ServiceListener {
+    final int profile;
+    final BehaviorSubject<ServiceEvent> events = BehaviorSubject.create();
+
+    BluetoothProfile proxy;
+    boolean closed;
+    int observers;
+    Disposable graceTimer;
+
+    Entry(int profile) {
+      this.profile = profile;
+    }
+
+    @Override public void onServiceConnected(int profile, BluetoothProfile proxy) {
+      synchronized (ProfileProxyCache.this) {
+        if (closed) {
+          // Connected after the last observer's grace period ran out.
+          bluetoothAdapter.closeProfileProxy(profile, proxy);
+          return;
+        }
+        this.proxy = proxy;
+      }
+      events.onNext(new ServiceEvent(ServiceEvent.State.CONNECTED, profile, proxy));
+    }
+
+    @Override public void onServiceDisconnected(int profile) {
+      synchronized (ProfileProxyCache.this) {
+        if (closed) {
+          return;
+        }
+        proxy = null;
+      }
+      events.onNext(new ServiceEvent(ServiceEvent.State.DISCONNECTED, profile, null));
+    }
+
+    void acquire() {
+      observers++;
+      if (graceTimer != null) {
+        graceTimer.dispose();
+        graceTimer = null;
+      }
+    }
+
+    void release() {
+      if (--observers > 0) {
+        return;
+      }
+      graceTimer = Schedulers.computation().scheduleDirect(new Runnable() {
+        @Override public void run() {
+          synchronized (ProfileProxyCache.this) {
+            if (observers > 0 || closed) {
+              return;
+            }
+            close();
+          }
+        }
+      }, gracePeriodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void close() {
+      closed = true;
+      graceTimer = null;
+      entries.remove(profile);
+      if (proxy != null) {
+        bluetoothAdapter.closeProfileProxy(profile, proxy);
+        proxy = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+import android.support.annotation.Nullable;
+import com.github.ivbaranov.rxbluetooth.events.ReconnectEvent;
+import com.github.ivbaranov.rxbluetooth.exceptions.ConnectionClosedException;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Completable;
+import io.reactivex.CompletableSource;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.Single;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+import java.security.InvalidParameterException;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.reactivestreams.Publisher;
+
+/**
+ * Connection which re-establishes itself whenever it is lost, waiting an exponentially growing,
+ * randomly shortened backoff between attempts. Streams observed through it carry on across
+ * reconnects: subscribers keep their subscription and receive data of every new connection.
+ *
+ * <p>The connection is opened when the first stream is subscribed and closed once the last one is
+ * disposed. Unlike with a plain {@link BluetoothConnection}, cancelling the last input stream
+ * doesn't close the connection, as it keeps every connection's input subscribed itself.
+ */
+public final class ReconnectingConnection {
+
+  /** Backoff before the first reconnect, in milliseconds. */
+  public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 500;
+
+  /** Maximum backoff between reconnects, in milliseconds. */
+  public static final long DEFAULT_MAX_BACKOFF_MILLIS = 30 * 1000;
+
+  /** Fraction of every backoff which is randomly cut off, so devices don't reconnect in step. */
+  public static final float DEFAULT_JITTER = 0.5f;
+
+  private final Single<BluetoothConnection> connect;
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+  private final float jitter;
+  private final int maxAttempts;
+
+  private final Subject<ReconnectEvent> events = PublishSubject.<ReconnectEvent>create()
+      .toSerialized();
+  private final Observable<BluetoothConnection> connections;
+  private volatile BluetoothConnection current;
+
+  /**
+   * Creates a connection to the service of the device, reconnecting with the default backoff for
+   * as long as it is observed.
+   *
+   * @param rxBluetooth used to connect to the device
+   * @param device bluetooth device to connect
+   * @param uuid uuid for SDP record
+   */
+  public ReconnectingConnection(RxBluetooth rxBluetooth, BluetoothDevice device, UUID uuid) {
+    this(rxBluetooth.connectAsClient(device, uuid)
+            .subscribeOn(Schedulers.io())
+            .map(new Function<BluetoothSocket, BluetoothConnection>() {
+              @Override public BluetoothConnection apply(BluetoothSocket socket)
+                  throws Exception {
+                return new BluetoothConnection(socket);
+              }
+            }), DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS, TimeUnit.MILLISECONDS,
+        DEFAULT_JITTER, 0);
+  }
+
+  /**
+   * @param connect opens a new connection every time it is subscribed
+   * @param initialBackoff backoff before the first reconnect, doubled after every failed attempt
+   * @param maxBackoff maximum backoff between reconnects
+   * @param unit unit of {@code initialBackoff} and {@code maxBackoff}
+   * @param jitter fraction of every backoff which is randomly cut off, from 0 to 1
+   * @param maxAttempts number of consecutive failed reconnects after which the last error is
+   * passed on to observers, or 0 to reconnect forever
+   */
+  public ReconnectingConnection(Single<BluetoothConnection> connect, long initialBackoff,
+      long maxBackoff, TimeUnit unit, float jitter, int maxAttempts) {
+    if (initialBackoff <= 0 || maxBackoff < initialBackoff) {
+      throw new InvalidParameterException("Backoff must be positive and not exceed its maximum");
+    }
+    if (!(jitter >= 0 && jitter <= 1)) {
+      throw new InvalidParameterException("Jitter must be in [0, 1]");
+    }
+    if (maxAttempts < 0) {
+      throw new InvalidParameterException("Max attempts can't be negative");
+    }
+
+    this.connect = connect;
+    this.initialBackoffMillis = unit.toMillis(initialBackoff);
+    this.maxBackoffMillis = unit.toMillis(maxBackoff);
+    this.jitter = jitter;
+    this.maxAttempts = maxAttempts;
+    this.connections = Observable.defer(new Callable<ObservableSource<BluetoothConnection>>() {
+      @Override public ObservableSource<BluetoothConnection> call() {
+        return connectLoop(new Backoff());
+      }
+    }).replay(1).refCount();
+  }
+
+  /**
+   * Observes connections, emitting the current one first and then every new one after a
+   * reconnect.
+   *
+   * @return RxJava Observable with {@link BluetoothConnection}
+   */
+  public Observable<BluetoothConnection> observeConnection() {
+    return connections;
+  }
+
+  /**
+   * Observes a stream of every connection, switching to the stream of the new connection after
+   * a reconnect. Errors of a stream are passed on unless its connection was lost.
+   *
+   * @param selector returns the stream to observe from a connection
+   * @return RxJava Flowable with items of the streams
+   */
+  public <T> Flowable<T> observe(final Function<BluetoothConnection, Publisher<T>> selector) {
+    return connections.toFlowable(BackpressureStrategy.LATEST)
+        .switchMap(new Function<BluetoothConnection, Publisher<T>>() {
+          @Override public Publisher<T> apply(final BluetoothConnection connection)
+              throws Exception {
+            return Flowable.fromPublisher(selector.apply(connection))
+                .onErrorResumeNext(new Function<Throwable, Publisher<T>>() {
+                  @Override public Publisher<T> apply(Throwable e) {
+                    return connection.isConnected() ? Flowable.<T>error(e) : Flowable.<T>empty();
+                  }
+                });
+          }
+        });
+  }
+
+  /**
+   * Observes chunks of bytes of every connection. See {@link
+   * BluetoothConnection#observeChunkStream()}.
+   *
+   * @return RxJava Flowable with chunks of bytes
+   */
+  public Flowable<byte[]> observeChunkStream() {
+    return observe(new Function<BluetoothConnection, Publisher<byte[]>>() {
+      @Override public Publisher<byte[]> apply(BluetoothConnection connection) {
+        return connection.observeChunkStream();
+      }
+    });
+  }
+
+  /**
+   * Observes strings of every connection with '\r' (Carriage Return) and '\n' (New Line) as
+   * delimiter. A string cut off by a lost connection is dropped.
+   *
+   * @return RxJava Flowable with {@link String}
+   */
+  public Flowable<String> observeStringStream() {
+    return observe(new Function<BluetoothConnection, Publisher<String>>() {
+      @Override public Publisher<String> apply(BluetoothConnection connection) {
+        return connection.observeStringStream();
+      }
+    });
+  }
+
+  /**
+   * Observes connection losses, reconnect attempts and reconnects.
+   *
+   * @return RxJava Observable with {@link ReconnectEvent}
+   */
+  public Observable<ReconnectEvent> observeReconnectEvents() {
+    return events;
+  }
+
+  /**
+   * @return the current connection, or null while reconnecting or not observed
+   */
+  @Nullable public BluetoothConnection getConnection() {
+    return current;
+  }
+
+  /**
+   * Sends array of bytes over the current connection.
+   *
+   * @param bytes array of bytes to be sent
+   * @return true if success, false if there was error occurred or disconnected
+   */
+  public boolean send(byte[] bytes) {
+    BluetoothConnection connection = current;
+    return connection != null && connection.send(bytes);
+  }
+
+  /**
+   * Sends array of bytes over the current connection without blocking. Notifies observers with
+   * {@link ConnectionClosedException} via {@code onError()} while reconnecting.
+   *
+   * @param bytes array of bytes to be sent
+   * @return RxJava Completable which completes once the bytes are written
+   */
+  public Completable sendAsync(final byte[] bytes) {
+    return Completable.defer(new Callable<CompletableSource>() {
+      @Override public CompletableSource call() {
+        BluetoothConnection connection = current;
+        if (connection == null) {
+          return Completable.error(new ConnectionClosedException("Connection is closed"));
+        }
+        return connection.sendAsync(bytes);
+      }
+    });
+  }
+
+  private Observable<BluetoothConnection> connectLoop(final Backoff backoff) {
+    return connect.toObservable()
+        .flatMap(new Function<BluetoothConnection, ObservableSource<BluetoothConnection>>() {
+          @Override public ObservableSource<BluetoothConnection> apply(
+              final BluetoothConnection connection) {
+            // Keeps the shared reader running while streams come and go, otherwise cancelling
+            // the last input stream would close the connection and trigger a reconnect. Ends by
+            // itself once the connection is closed, which also lets it take a read error.
+            connection.observeChunkStream()
+                .subscribe(new Consumer<byte[]>() {
+                  @Override public void accept(byte[] chunk) {
+                    // Streams subscribe to the connection themselves.
+                  }
+                }, new Consumer<Throwable>() {
+                  @Override public void accept(Throwable e) {
+                    // Reported by the connection closing, which triggers a reconnect.
+                  }
+                });
+            // Closed after the watcher is disposed, so closing doesn't signal a lost connection.
+            return connection.observeClosed()
+                .andThen(Observable.<BluetoothConnection>error(
+                    new ConnectionClosedException("Connection lost")))
+                .startWith(connection)
+                .doFinally(new Action() {
+                  @Override public void run() {
+                    if (current == connection) {
+                      current = null;
+                    }
+                    connection.closeConnection();
+                  }
+                });
+          }
+        })
+        .doOnNext(new Consumer<BluetoothConnection>() {
+          @Override public void accept(BluetoothConnection connection) {
+            current = connection;
+            backoff.onConnected();
+          }
+        })
+        .retryWhen(new Function<Observable<Throwable>, ObservableSource<Long>>() {
+          @Override public ObservableSource<Long> apply(Observable<Throwable> errors) {
+            return errors.flatMap(new Function<Throwable, ObservableSource<Long>>() {
+              @Override public ObservableSource<Long> apply(Throwable e) {
+                long delay = backoff.onFailed(e);
+                if (delay < 0) {
+                  return Observable.error(e);
+                }
+                return Observable.timer(delay, TimeUnit.MILLISECONDS);
+              }
+            });
+          }
+        });
+  }
+
+  /**
+   * Attempt counter and downtime of one connect loop.
+   */
+  private final class Backoff {
+    private int attempt;
+    private long disconnectedAt = -1;
+
+    void onConnected() {
+      long downtime = disconnectedAt < 0 ? 0 : now() - disconnectedAt;
+      events.onNext(new ReconnectEvent(ReconnectEvent.State.CONNECTED, attempt, 0, downtime, null));
+      attempt = 0;
+      disconnectedAt = -1;
+    }
+
+    /**
+     * @return backoff before the next attempt in milliseconds, or -1 to give up
+     */
+    long onFailed(Throwable e) {
+      if (disconnectedAt < 0) {
+        disconnectedAt = now();
+        events.onNext(new ReconnectEvent(ReconnectEvent.State.DISCONNECTED, attempt, 0, 0, e));
+      }
+
+      attempt++;
+      if (maxAttempts > 0 && attempt > maxAttempts) {
+        return -1;
+      }
+
+      long delay = initialBackoffMillis << Math.min(attempt - 1, 30);
+      if (delay <= 0 || delay > maxBackoffMillis) {
+        delay = maxBackoffMillis;
+      }
+      delay -= (long) (delay * jitter * ThreadLocalRandom.current().nextDouble());
+
+      events.onNext(new ReconnectEvent(ReconnectEvent.State.RECONNECTING, attempt, delay,
+          now() - disconnectedAt, e));
+      return delay;
+    }
+
+    private long now() {
+      return Schedulers.computation().now(TimeUnit.MILLISECONDS);
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothServerSocket;
+import android.bluetooth.BluetoothSocket;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Cancellable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Accepts connections on one {@link BluetoothServerSocket} for as long as it is subscribed, on a
+ * dedicated thread. While the maximum number of clients is connected, accepting pauses until one
+ * of them disconnects. Disposing closes the server socket and every accepted connection.
+ */
+final class RfcommServer implements ObservableOnSubscribe<BluetoothConnection> {
+  private final BluetoothAdapter bluetoothAdapter;
+  private final String name;
+  private final UUID uuid;
+  private final int maxClients;
+
+  RfcommServer(BluetoothAdapter bluetoothAdapter, String name, UUID uuid, int maxClients) {
+    this.bluetoothAdapter = bluetoothAdapter;
+    this.name = name;
+    this.uuid = uuid;
+    this.maxClients = maxClients;
+  }
+
+  @Override public void subscribe(@NonNull final ObservableEmitter<BluetoothConnection> emitter)
+      throws Exception {
+    final BluetoothServerSocket serverSocket =
+        bluetoothAdapter.listenUsingRfcommWithServiceRecord(name, uuid);
+    final ExecutorService acceptExecutor = Utils.newSingleThreadExecutor("RxBluetooth-server");
+    final Set<BluetoothConnection> clients = new HashSet<>();
+    final Semaphore slots = new Semaphore(maxClients);
+
+    emitter.setCancellable(new Cancellable() {
+      @Override public void cancel() {
+        // Closing is the only way to interrupt a pending accept.
+        Utils.close(serverSocket);
+        acceptExecutor.shutdownNow();
+
+        List<BluetoothConnection> connected;
+        synchronized (clients) {
+          connected = new ArrayList<>(clients);
+          clients.clear();
+        }
+        for (BluetoothConnection connection : connected) {
+          connection.closeConnection();
+        }
+      }
+    });
+
+    acceptExecutor.execute(new Runnable() {
+      @Override public void run() {
+        try {
+          while (!emitter.isDisposed()) {
+            slots.acquire();
+            BluetoothSocket socket;
+            try {
+              socket = serverSocket.accept();
+            } catch (IOException e) {
+              slots.release();
+              emitter.tryOnError(e);
+              return;
+            }
+            accept(socket);
+          }
+        } catch (InterruptedException e) {
+          // Disposed while waiting for a client to disconnect.
+        }
+      }
+
+      private void accept(BluetoothSocket socket) {
+        final BluetoothConnection connection;
+        try {
+          connection = new BluetoothConnection(socket);
+        } catch (Exception e) {
+          // Client went away before its streams could be opened, keep serving the others.
+          Utils.close(socket);
+          slots.release();
+          return;
+        }
+
+        synchronized (clients) {
+          if (emitter.isDisposed()) {
+            connection.closeConnection();
+            return;
+          }
+          clients.add(connection);
+        }
+        connection.observeClosed().subscribe(new Action() {
+          @Override public void run() {
+            synchronized (clients) {
+              clients.remove(connection);
+            }
+            slots.release();
+          }
+        });
+
+        emitter.onNext(connection);
+      }
+    });
+  }
+}
@@ -17,6 +17,7 @@ package com.github.ivbaranov.rxbluetooth;
 
 import android.app.Activity;
 import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothClass;
 import android.bluetooth.BluetoothDevice;
 import android.bluetooth.BluetoothProfile;
 import android.bluetooth.BluetoothServerSocket;
@@ -24,30 +25,55 @@ import android.bluetooth.BluetoothSocket;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.location.LocationManager;
 import android.os.Build;
+import android.os.ParcelUuid;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
 import android.support.annotation.RequiresApi;
 import android.text.TextUtils;
 import com.github.ivbaranov.rxbluetooth.events.AclEvent;
 import com.github.ivbaranov.rxbluetooth.events.BondStateEvent;
 import com.github.ivbaranov.rxbluetooth.events.ConnectionStateEvent;
+import com.github.ivbaranov.rxbluetooth.events.DeviceFoundEvent;
 import com.github.ivbaranov.rxbluetooth.events.ServiceEvent;
+import com.github.ivbaranov.rxbluetooth.exceptions.ConnectTimeoutException;
+import com.github.ivbaranov.rxbluetooth.exceptions.FetchUuidsException;
 import com.github.ivbaranov.rxbluetooth.exceptions.GetProfileProxyException;
+import io.reactivex.Completable;
 import io.reactivex.Observable;
 import io.reactivex.ObservableEmitter;
 import io.reactivex.ObservableOnSubscribe;
 import io.reactivex.Single;
 import io.reactivex.SingleEmitter;
+import io.reactivex.SingleSource;
 import io.reactivex.SingleOnSubscribe;
-import io.reactivex.android.MainThreadDisposable;
 import io.reactivex.annotations.NonNull;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.BehaviorSubject;
+import io.reactivex.subjects.Subject;
 import java.io.IOException;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static android.Manifest.permission.ACCESS_COARSE_LOCATION;
 import static android.location.LocationManager.GPS_PROVIDER;
@@ -57,14 +83,84 @@ import static com.github.ivbaranov.rxbluetooth.Utils.createRfcommSocket;
 
 /**
  * Enables clients to listen to bluetooth events using RxJava Observables.
+ *
+ * <p>Observables of broadcast events are hot: subscribers of the same events share a single
+ * {@link BroadcastReceiver}, registered while at least one of them is subscribed.
  */
 public final class RxBluetooth {
+  /**
+   * Milliseconds a result of {@link #fetchDeviceUuids(BluetoothDevice)} is cached for.
+   */
+  public static final long DEFAULT_UUID_CACHE_TTL = 10 * 60 * 1000;
+
+  /**
+   * Milliseconds {@link #fetchDeviceUuids(BluetoothDevice)} waits for a service discovery.
+   */
+  public static final long UUID_FETCH_TIMEOUT = 30 * 1000;
+
+  /**
+   * Milliseconds a profile proxy of {@link #observeSharedBluetoothProfile(int)} stays open after
+   * its last observer disposed.
+   */
+  public static final long PROFILE_PROXY_GRACE_PERIOD = 5 * 1000;
+
+  private static final long NO_TIMEOUT = -1;
+
   BluetoothAdapter bluetoothAdapter;
   Context context;
+  BroadcastHub broadcastHub;
+  ProfileProxyCache profileProxyCache;
+  DeviceDispatcher<ConnectionStateEvent> connectionStateDispatcher;
+  DeviceDispatcher<BondStateEvent> bondStateDispatcher;
+  DeviceDispatcher<AclEvent> aclEventDispatcher;
+
+  private Observable<Integer> currentBluetoothState;
+  private Observable<Integer> currentScanMode;
+  private final Map<String, Observable<Integer>> currentBondStates = new HashMap<>();
+
+  private final Subject<Boolean> connecting = BehaviorSubject.createDefault(false);
+  private int connectsInFlight;
+
+  private final UuidCache uuidCache =
+      new UuidCache(new Function<BluetoothDevice, Single<ParcelUuid[]>>() {
+        @Override public Single<ParcelUuid[]> apply(BluetoothDevice device) {
+          return observeFetchDeviceUuids(device)
+              .firstOrError()
+              .timeout(UUID_FETCH_TIMEOUT, TimeUnit.MILLISECONDS)
+              .map(new Function<Parcelable[], ParcelUuid[]>() {
+                @Override public ParcelUuid[] apply(Parcelable[] uuids) {
+                  ParcelUuid[] result = new ParcelUuid[uuids.length];
+                  System.arraycopy(uuids, 0, result, 0, uuids.length);
+                  return result;
+                }
+              });
+        }
+      });
 
   public RxBluetooth(Context context) {
     this.bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
     this.context = context;
+    this.broadcastHub = new BroadcastHub(context);
+    this.profileProxyCache =
+        new ProfileProxyCache(bluetoothAdapter, context, PROFILE_PROXY_GRACE_PERIOD);
+    this.connectionStateDispatcher = new DeviceDispatcher<>(observeConnectionState(),
+        new Function<ConnectionStateEvent, BluetoothDevice>() {
+          @Override public BluetoothDevice apply(ConnectionStateEvent event) {
+            return event.getBluetoothDevice();
+          }
+        });
+    this.bondStateDispatcher = new DeviceDispatcher<>(observeBondState(),
+        new Function<BondStateEvent, BluetoothDevice>() {
+          @Override public BluetoothDevice apply(BondStateEvent event) {
+            return event.getBluetoothDevice();
+          }
+        });
+    this.aclEventDispatcher = new DeviceDispatcher<>(observeAclEvent(),
+        new Function<AclEvent, BluetoothDevice>() {
+          @Override public BluetoothDevice apply(AclEvent event) {
+            return event.getBluetoothDevice();
+          }
+        });
   }
 
   /**
@@ -194,6 +290,70 @@ public final class RxBluetooth {
     return bluetoothAdapter.cancelDiscovery();
   }
 
+  /**
+   * Runs discovery for as long as the returned Observable is subscribed, restarting every inquiry
+   * as soon as the previous one finishes. Discovery is cancelled while {@link
+   * #connectAsClient(BluetoothDevice, UUID)} or {@link #connectAsClient(BluetoothDevice, int)} is
+   * connecting, as it slows down connecting and transferring data, and resumes once done.
+   *
+   * @return RxJava Observable with {@link DeviceFoundEvent} of devices found
+   */
+  public Observable<DeviceFoundEvent> observeDiscoverySession() {
+    return observeDiscoverySession(0, 0, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Runs discovery for as long as the returned Observable is subscribed, alternating between
+   * discovering for {@code activeTime} and pausing for {@code idleTime}. During active periods
+   * every inquiry is restarted as soon as the previous one finishes. Discovery is cancelled while
+   * {@link #connectAsClient(BluetoothDevice, UUID)} or {@link #connectAsClient(BluetoothDevice,
+   * int)} is connecting, and starts a new active period once done.
+   *
+   * @param activeTime length of active periods, or 0 to discover continuously
+   * @param idleTime length of idle periods, or 0 to discover continuously
+   * @param unit unit of {@code activeTime} and {@code idleTime}
+   * @return RxJava Observable with {@link DeviceFoundEvent} of devices found
+   */
+  public Observable<DeviceFoundEvent> observeDiscoverySession(final long activeTime,
+      final long idleTime, final TimeUnit unit) {
+    return Observable.create(new ObservableOnSubscribe<DeviceFoundEvent>() {
+      @Override public void subscribe(@NonNull final ObservableEmitter<DeviceFoundEvent> emitter)
+          throws Exception {
+        final DiscoverySession session =
+            new DiscoverySession(bluetoothAdapter, unit.toMillis(activeTime),
+                unit.toMillis(idleTime), Schedulers.computation().createWorker());
+        final CompositeDisposable disposables = new CompositeDisposable();
+
+        emitter.setCancellable(new Cancellable() {
+          @Override public void cancel() {
+            disposables.dispose();
+            session.stop();
+          }
+        });
+
+        disposables.add(observeDeviceFound().subscribe(new Consumer<DeviceFoundEvent>() {
+          @Override public void accept(DeviceFoundEvent event) {
+            emitter.onNext(event);
+          }
+        }));
+        disposables.add(broadcastHub.observe(BluetoothAdapter.ACTION_DISCOVERY_FINISHED)
+            .subscribe(new Consumer<Intent>() {
+              @Override public void accept(Intent intent) {
+                session.onDiscoveryFinished();
+              }
+            }));
+
+        disposables.add(connecting.subscribe(new Consumer<Boolean>() {
+          @Override public void accept(Boolean connecting) {
+            session.onConnecting(connecting);
+          }
+        }));
+
+        session.start();
+      }
+    });
+  }
+
   /**
    * This will issue a request to make the local device discoverable to other devices. By default,
    * the device will become discoverable for 120 seconds.
@@ -228,29 +388,34 @@ public final class RxBluetooth {
    * @return RxJava Observable with BluetoothDevice found
    */
   public Observable<BluetoothDevice> observeDevices() {
-    final IntentFilter filter = new IntentFilter(BluetoothDevice.ACTION_FOUND);
-    return Observable.create(new ObservableOnSubscribe<BluetoothDevice>() {
-      @Override public void subscribe(@NonNull final ObservableEmitter<BluetoothDevice> emitter)
-          throws Exception {
-        final BroadcastReceiver receiver = new BroadcastReceiver() {
-          @Override public void onReceive(Context context, Intent intent) {
-            String action = intent.getAction();
-            if (action.equals(BluetoothDevice.ACTION_FOUND)) {
-              BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
-              emitter.onNext(device);
-            }
+    return broadcastHub.observe(BluetoothDevice.ACTION_FOUND)
+        .map(new Function<Intent, BluetoothDevice>() {
+          @Override public BluetoothDevice apply(Intent intent) {
+            return intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
           }
-        };
+        });
+  }
 
-        context.registerReceiver(receiver, filter);
+  /**
+   * Observes Bluetooth devices found while discovering, together with the name, class and signal
+   * strength reported for them. Devices are reported every time they respond to an inquiry; use
+   * {@link DiscoveryCache} to tell new devices from known ones.
+   *
+   * @return RxJava Observable with {@link DeviceFoundEvent}
+   */
+  public Observable<DeviceFoundEvent> observeDeviceFound() {
+    return broadcastHub.observe(BluetoothDevice.ACTION_FOUND)
+        .map(new Function<Intent, DeviceFoundEvent>() {
+          @Override public DeviceFoundEvent apply(Intent intent) {
+            BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+            String name = intent.getStringExtra(BluetoothDevice.EXTRA_NAME);
+            BluetoothClass bluetoothClass = intent.getParcelableExtra(BluetoothDevice.EXTRA_CLASS);
+            short rssi = intent.getShortExtra(BluetoothDevice.EXTRA_RSSI, Short.MIN_VALUE);
 
-        emitter.setDisposable(new MainThreadDisposable() {
-          @Override protected void onDispose() {
-            context.unregisterReceiver(receiver);
+            return new DeviceFoundEvent(device, name, bluetoothClass, rssi,
+                SystemClock.elapsedRealtime());
           }
         });
-      }
-    });
   }
 
   /**
@@ -260,28 +425,12 @@ public final class RxBluetooth {
    * @return RxJava Observable with DiscoveryState
    */
   public Observable<String> observeDiscovery() {
-    final IntentFilter filter = new IntentFilter();
-    filter.addAction(BluetoothAdapter.ACTION_DISCOVERY_STARTED);
-    filter.addAction(BluetoothAdapter.ACTION_DISCOVERY_FINISHED);
-
-    return Observable.create(new ObservableOnSubscribe<String>() {
-      @Override public void subscribe(@NonNull final ObservableEmitter<String> emitter)
-          throws Exception {
-        final BroadcastReceiver receiver = new BroadcastReceiver() {
-          @Override public void onReceive(Context context, Intent intent) {
-            emitter.onNext(intent.getAction());
-          }
-        };
-
-        context.registerReceiver(receiver, filter);
-
-        emitter.setDisposable(new MainThreadDisposable() {
-          @Override protected void onDispose() {
-            context.unregisterReceiver(receiver);
+    return broadcastHub.observe(BluetoothAdapter.ACTION_DISCOVERY_STARTED,
+        BluetoothAdapter.ACTION_DISCOVERY_FINISHED).map(new Function<Intent, String>() {
+          @Override public String apply(Intent intent) {
+            return intent.getAction();
           }
         });
-      }
-    });
   }
 
   /**
@@ -294,27 +443,33 @@ public final class RxBluetooth {
    * @return RxJava Observable with BluetoothState
    */
   public Observable<Integer> observeBluetoothState() {
-    final IntentFilter filter = new IntentFilter();
-    filter.addAction(BluetoothAdapter.ACTION_STATE_CHANGED);
-
-    return Observable.create(new ObservableOnSubscribe<Integer>() {
-      @Override public void subscribe(@NonNull final ObservableEmitter<Integer> emitter)
-          throws Exception {
-        final BroadcastReceiver receiver = new BroadcastReceiver() {
-          @Override public void onReceive(Context context, Intent intent) {
-            emitter.onNext(bluetoothAdapter.getState());
-          }
-        };
-
-        context.registerReceiver(receiver, filter);
-
-        emitter.setDisposable(new MainThreadDisposable() {
-          @Override protected void onDispose() {
-            context.unregisterReceiver(receiver);
+    return broadcastHub.observe(BluetoothAdapter.ACTION_STATE_CHANGED)
+        .map(new Function<Intent, Integer>() {
+          @Override public Integer apply(Intent intent) {
+            return intent.hasExtra(BluetoothAdapter.EXTRA_STATE)
+                ? intent.getIntExtra(BluetoothAdapter.EXTRA_STATE, BluetoothAdapter.ERROR)
+                : bluetoothAdapter.getState();
           }
         });
-      }
-    });
+  }
+
+  /**
+   * Observes BluetoothState, starting with the current one. Observers share a single stream that
+   * replays the latest state, so observers subscribing while it is active get the state without
+   * querying the adapter.
+   *
+   * @return RxJava Observable with BluetoothState
+   * @see #observeBluetoothState()
+   */
+  public synchronized Observable<Integer> observeCurrentBluetoothState() {
+    if (currentBluetoothState == null) {
+      currentBluetoothState = current(observeBluetoothState(), new Callable<Integer>() {
+        @Override public Integer call() {
+          return bluetoothAdapter.getState();
+        }
+      });
+    }
+    return currentBluetoothState;
   }
 
   /**
@@ -326,27 +481,33 @@ public final class RxBluetooth {
    * @return RxJava Observable with scan mode
    */
   public Observable<Integer> observeScanMode() {
-    final IntentFilter filter = new IntentFilter();
-    filter.addAction(BluetoothAdapter.ACTION_SCAN_MODE_CHANGED);
-
-    return Observable.create(new ObservableOnSubscribe<Integer>() {
-      @Override public void subscribe(@NonNull final ObservableEmitter<Integer> emitter)
-          throws Exception {
-        final BroadcastReceiver receiver = new BroadcastReceiver() {
-          @Override public void onReceive(Context context, Intent intent) {
-            emitter.onNext(bluetoothAdapter.getScanMode());
-          }
-        };
-
-        context.registerReceiver(receiver, filter);
-
-        emitter.setDisposable(new MainThreadDisposable() {
-          @Override protected void onDispose() {
-            context.unregisterReceiver(receiver);
+    return broadcastHub.observe(BluetoothAdapter.ACTION_SCAN_MODE_CHANGED)
+        .map(new Function<Intent, Integer>() {
+          @Override public Integer apply(Intent intent) {
+            return intent.hasExtra(BluetoothAdapter.EXTRA_SCAN_MODE)
+                ? intent.getIntExtra(BluetoothAdapter.EXTRA_SCAN_MODE, BluetoothAdapter.ERROR)
+                : bluetoothAdapter.getScanMode();
           }
         });
-      }
-    });
+  }
+
+  /**
+   * Observes scan mode of device, starting with the current one. Observers share a single stream
+   * that replays the latest scan mode, so observers subscribing while it is active get the scan
+   * mode without querying the adapter.
+   *
+   * @return RxJava Observable with scan mode
+   * @see #observeScanMode()
+   */
+  public synchronized Observable<Integer> observeCurrentScanMode() {
+    if (currentScanMode == null) {
+      currentScanMode = current(observeScanMode(), new Callable<Integer>() {
+        @Override public Integer call() {
+          return bluetoothAdapter.getScanMode();
+        }
+      });
+    }
+    return currentScanMode;
   }
 
   /**
@@ -376,6 +537,24 @@ public final class RxBluetooth {
     });
   }
 
+  /**
+   * Observes connection to a proxy of the specified profile shared with other observers of the
+   * profile. The proxy is obtained once when the first observer subscribes, the latest {@link
+   * ServiceEvent} is emitted to observers subscribing later, and the proxy is closed
+   * {@link #PROFILE_PROXY_GRACE_PERIOD} milliseconds after the last observer disposed.
+   *
+   * <p>The proxy is owned by this instance, so it must not be passed to
+   * {@link #closeProfileProxy(int, BluetoothProfile)}.
+   *
+   * @param bluetoothProfile bluetooth profile to connect to. Can be either {@link
+   * BluetoothProfile#HEALTH},{@link BluetoothProfile#HEADSET}, {@link BluetoothProfile#A2DP},
+   * {@link BluetoothProfile#GATT} or {@link BluetoothProfile#GATT_SERVER}.
+   * @return RxJava Observable with {@link ServiceEvent}
+   */
+  public Observable<ServiceEvent> observeSharedBluetoothProfile(int bluetoothProfile) {
+    return profileProxyCache.observe(bluetoothProfile);
+  }
+
   /**
    * Close the connection of the profile proxy to the Service.
    *
@@ -398,15 +577,9 @@ public final class RxBluetooth {
    * @return RxJava Observable with {@link ConnectionStateEvent}
    */
   public Observable<ConnectionStateEvent> observeConnectionState() {
-    final IntentFilter filter = new IntentFilter();
-    filter.addAction(BluetoothAdapter.ACTION_CONNECTION_STATE_CHANGED);
-
-    return Observable.create(new ObservableOnSubscribe<ConnectionStateEvent>() {
-      @Override
-      public void subscribe(@NonNull final ObservableEmitter<ConnectionStateEvent> emitter)
-          throws Exception {
-        final BroadcastReceiver receiver = new BroadcastReceiver() {
-          @Override public void onReceive(Context context, Intent intent) {
+    return broadcastHub.observe(BluetoothAdapter.ACTION_CONNECTION_STATE_CHANGED)
+        .map(new Function<Intent, ConnectionStateEvent>() {
+          @Override public ConnectionStateEvent apply(Intent intent) {
             int status = intent.getIntExtra(BluetoothAdapter.EXTRA_CONNECTION_STATE,
                 BluetoothAdapter.STATE_DISCONNECTED);
             int previousStatus =
@@ -414,19 +587,21 @@ public final class RxBluetooth {
                     BluetoothAdapter.STATE_DISCONNECTED);
             BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
 
-            emitter.onNext(new ConnectionStateEvent(status, previousStatus, device));
-          }
-        };
-
-        context.registerReceiver(receiver, filter);
-
-        emitter.setDisposable(new MainThreadDisposable() {
-          @Override protected void onDispose() {
-            context.unregisterReceiver(receiver);
+            return new ConnectionStateEvent(status, previousStatus, device);
           }
         });
-      }
-    });
+  }
+
+  /**
+   * Observes connection state of the device. Unlike filtering
+   * {@link #observeConnectionState()}, events of other devices aren't delivered to the observer.
+   *
+   * @param bluetoothDevice bluetooth device
+   * @return RxJava Observable with {@link ConnectionStateEvent} of the device
+   */
+  public Observable<ConnectionStateEvent> observeConnectionState(
+      BluetoothDevice bluetoothDevice) {
+    return connectionStateDispatcher.observe(bluetoothDevice);
   }
 
   /**
@@ -435,33 +610,78 @@ public final class RxBluetooth {
    * @return RxJava Observable with {@link BondStateEvent}
    */
   public Observable<BondStateEvent> observeBondState() {
-    final IntentFilter filter = new IntentFilter();
-    filter.addAction(BluetoothDevice.ACTION_BOND_STATE_CHANGED);
-
-    return Observable.create(new ObservableOnSubscribe<BondStateEvent>() {
-      @Override public void subscribe(@NonNull final ObservableEmitter<BondStateEvent> emitter)
-          throws Exception {
-        final BroadcastReceiver receiver = new BroadcastReceiver() {
-          @Override public void onReceive(Context context, Intent intent) {
+    return broadcastHub.observe(BluetoothDevice.ACTION_BOND_STATE_CHANGED)
+        .map(new Function<Intent, BondStateEvent>() {
+          @Override public BondStateEvent apply(Intent intent) {
             int state =
                 intent.getIntExtra(BluetoothDevice.EXTRA_BOND_STATE, BluetoothDevice.BOND_NONE);
             int previousState = intent.getIntExtra(BluetoothDevice.EXTRA_PREVIOUS_BOND_STATE,
                 BluetoothDevice.BOND_NONE);
             BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
 
-            emitter.onNext(new BondStateEvent(state, previousState, device));
+            return new BondStateEvent(state, previousState, device);
           }
-        };
+        });
+  }
 
-        context.registerReceiver(receiver, filter);
+  /**
+   * Observes bond state of the device. Unlike filtering {@link #observeBondState()}, events of
+   * other devices aren't delivered to the observer.
+   *
+   * @param bluetoothDevice bluetooth device
+   * @return RxJava Observable with {@link BondStateEvent} of the device
+   */
+  public Observable<BondStateEvent> observeBondState(BluetoothDevice bluetoothDevice) {
+    return bondStateDispatcher.observe(bluetoothDevice);
+  }
 
-        emitter.setDisposable(new MainThreadDisposable() {
-          @Override protected void onDispose() {
-            context.unregisterReceiver(receiver);
-          }
-        });
-      }
-    });
+  /**
+   * Observes bond state of the device, starting with the current one. Possible values are
+   * {@link BluetoothDevice#BOND_NONE}, {@link BluetoothDevice#BOND_BONDING} and
+   * {@link BluetoothDevice#BOND_BONDED}. Observers of the same device share a single stream that
+   * replays the latest state, so observers subscribing while it is active get the state without
+   * querying the device. The stream is released once its last observer disposes.
+   *
+   * @param bluetoothDevice bluetooth device
+   * @return RxJava Observable with bond state
+   * @see #observeBondState()
+   */
+  public synchronized Observable<Integer> observeCurrentBondState(
+      final BluetoothDevice bluetoothDevice) {
+    final String address = bluetoothDevice.getAddress();
+    Observable<Integer> stream = currentBondStates.get(address);
+    if (stream == null) {
+      final AtomicReference<Observable<Integer>> self = new AtomicReference<>();
+      Observable<Integer> changes = observeBondState(bluetoothDevice)
+          .map(new Function<BondStateEvent, Integer>() {
+            @Override public Integer apply(BondStateEvent event) {
+              return event.getState();
+            }
+          })
+          .doFinally(new Action() {
+            @Override public void run() {
+              forgetCurrentBondState(address, self.get());
+            }
+          });
+      stream = current(changes, new Callable<Integer>() {
+        @Override public Integer call() {
+          return bluetoothDevice.getBondState();
+        }
+      });
+      self.set(stream);
+      currentBondStates.put(address, stream);
+    }
+    return stream;
+  }
+
+  /**
+   * Drops the shared bond state stream of the device once its last observer is gone, unless it
+   * has already been replaced by a newer one.
+   */
+  private synchronized void forgetCurrentBondState(String address, Observable<Integer> stream) {
+    if (currentBondStates.get(address) == stream) {
+      currentBondStates.remove(address);
+    }
   }
 
   /**
@@ -495,33 +715,60 @@ public final class RxBluetooth {
   /**
    * Opens {@link BluetoothServerSocket}, listens for a single connection request, releases socket
    * and returns a connected {@link BluetoothSocket} on successful connection. Notifies observers
-   * with {@link IOException} {@code onError()}.
+   * with {@link IOException} {@code onError()}. Disposing stops listening and releases the
+   * server socket.
    *
    * @param name service name for SDP record
    * @param uuid uuid for SDP record
    * @return Single with connected {@link BluetoothSocket} on successful connection
    */
-  public Single<BluetoothSocket> connectAsServer(final String name, final UUID uuid) {
-    return Single.create(new SingleOnSubscribe<BluetoothSocket>() {
-      @Override public void subscribe(@NonNull SingleEmitter<BluetoothSocket> emitter) {
-        try {
-          BluetoothServerSocket bluetoothServerSocket =
-              bluetoothAdapter.listenUsingRfcommWithServiceRecord(name, uuid);
-          try {
-            emitter.onSuccess(bluetoothServerSocket.accept());
-          } finally {
-            bluetoothServerSocket.close();
-          }
-        } catch(IOException e) {
-            emitter.onError(e);
-        }
-      }
-    });
+  public Single<BluetoothSocket> connectAsServer(String name, UUID uuid) {
+    return accept(name, uuid, NO_TIMEOUT);
+  }
+
+  /**
+   * Opens {@link BluetoothServerSocket}, listens for a single connection request, releases socket
+   * and returns a connected {@link BluetoothSocket} on successful connection. Notifies observers
+   * with {@link ConnectTimeoutException} via {@code onError()} if no device connects in time, and
+   * with {@link IOException} if listening fails.
+   *
+   * @param name service name for SDP record
+   * @param uuid uuid for SDP record
+   * @param timeout time to wait for a connection request
+   * @param unit unit of {@code timeout}
+   * @return Single with connected {@link BluetoothSocket} on successful connection
+   */
+  public Single<BluetoothSocket> connectAsServer(String name, UUID uuid, long timeout,
+      TimeUnit unit) {
+    return accept(name, uuid, unit.toMillis(timeout));
+  }
+
+  /**
+   * Opens {@link BluetoothServerSocket} and keeps accepting connection requests on a dedicated
+   * thread for as long as the returned Observable is subscribed, emitting a {@link
+   * BluetoothConnection} for every client. Once {@code maxClients} clients are connected,
+   * accepting pauses until one of them disconnects. Disposing closes the server socket and all
+   * connections. Notifies observers with {@link IOException} via {@code onError()} if listening
+   * or accepting fails.
+   *
+   * @param name service name for SDP record
+   * @param uuid uuid for SDP record
+   * @param maxClients maximum number of clients connected at once
+   * @return RxJava Observable with {@link BluetoothConnection} of every client
+   */
+  public Observable<BluetoothConnection> observeServerConnections(String name, UUID uuid,
+      int maxClients) {
+    if (maxClients <= 0) {
+      throw new InvalidParameterException("Max clients must be positive");
+    }
+
+    return Observable.create(new RfcommServer(bluetoothAdapter, name, uuid, maxClients));
   }
 
   /**
    * Create connection to {@link BluetoothDevice} and returns a connected {@link BluetoothSocket}
    * on successful connection. Notifies observers with {@link IOException} via {@code onError()}.
+   * Disposing aborts connecting and closes the socket.
    *
    * @param bluetoothDevice bluetooth device to connect
    * @param uuid uuid for SDP record
@@ -529,27 +776,24 @@ public final class RxBluetooth {
    */
   public Single<BluetoothSocket> connectAsClient(final BluetoothDevice bluetoothDevice,
       final UUID uuid) {
-    return Single.create(new SingleOnSubscribe<BluetoothSocket>() {
-      @Override public void subscribe(@NonNull SingleEmitter<BluetoothSocket> emitter) {
-        BluetoothSocket bluetoothSocket = null;
-        try {
-          bluetoothSocket = bluetoothDevice.createRfcommSocketToServiceRecord(uuid);
-          bluetoothSocket.connect();
-          emitter.onSuccess(bluetoothSocket);
-        } catch (IOException e) {
-          if (bluetoothSocket != null) {
-            try {
-              bluetoothSocket.close();
-            } catch (IOException suppressed) {
-              if (SDK_INT >= 19) {
-                e.addSuppressed(suppressed);
-              }
-            }
-          }
-          emitter.onError(e);
-        }
-      }
-    });
+    return connect(rfcommSocketToServiceRecord(bluetoothDevice, uuid), NO_TIMEOUT);
+  }
+
+  /**
+   * Create connection to {@link BluetoothDevice} and returns a connected {@link BluetoothSocket}
+   * on successful connection. Notifies observers with {@link ConnectTimeoutException} via {@code
+   * onError()} if connecting takes longer than the timeout, and with {@link IOException} if it
+   * fails.
+   *
+   * @param bluetoothDevice bluetooth device to connect
+   * @param uuid uuid for SDP record
+   * @param timeout time to wait for the connection
+   * @param unit unit of {@code timeout}
+   * @return Single with connected {@link BluetoothSocket} on successful connection
+   */
+  public Single<BluetoothSocket> connectAsClient(BluetoothDevice bluetoothDevice, UUID uuid,
+      long timeout, TimeUnit unit) {
+    return connect(rfcommSocketToServiceRecord(bluetoothDevice, uuid), unit.toMillis(timeout));
   }
 
   /**
@@ -557,6 +801,7 @@ public final class RxBluetooth {
    * on successful connection.
    * Note: createRfcommSocket is not public API and hence this might break in the future.
    * Notifies observers with {@link IOException} or any reflection related exception via {@code onError()}.
+   * Disposing aborts connecting and closes the socket.
    *
    * @param bluetoothDevice bluetooth device to connect
    * @param channel RFCOMM channel to connect to
@@ -564,29 +809,199 @@ public final class RxBluetooth {
    */
   public Single<BluetoothSocket> connectAsClient(final BluetoothDevice bluetoothDevice,
       final int channel) {
-    return Single.create(new SingleOnSubscribe<BluetoothSocket>() {
-      @Override public void subscribe(@NonNull SingleEmitter<BluetoothSocket> emitter) {
-        BluetoothSocket bluetoothSocket = null;
-        try {
-          bluetoothSocket = createRfcommSocket(bluetoothDevice, channel);
-          bluetoothSocket.connect();
-          emitter.onSuccess(bluetoothSocket);
-        } catch (IOException e) {
-          if (bluetoothSocket != null) {
+    return connect(rfcommSocket(bluetoothDevice, channel), NO_TIMEOUT);
+  }
+
+  /**
+   * Create connection to {@link BluetoothDevice} via createRfcommSocket and returns a connected
+   * {@link BluetoothSocket} on successful connection. See {@link
+   * #connectAsClient(BluetoothDevice, int)}. Notifies observers with {@link
+   * ConnectTimeoutException} via {@code onError()} if connecting takes longer than the timeout.
+   *
+   * @param bluetoothDevice bluetooth device to connect
+   * @param channel RFCOMM channel to connect to
+   * @param timeout time to wait for the connection
+   * @param unit unit of {@code timeout}
+   * @return Single with connected {@link BluetoothSocket} on successful connection
+   */
+  public Single<BluetoothSocket> connectAsClient(BluetoothDevice bluetoothDevice, int channel,
+      long timeout, TimeUnit unit) {
+    return connect(rfcommSocket(bluetoothDevice, channel), unit.toMillis(timeout));
+  }
+
+  /**
+   * Create connection to {@link BluetoothDevice} trying the endpoints one after another, each once
+   * the previous one failed, and returns the first connected {@link BluetoothSocket}. Notifies
+   * observers with {@link IOException} via {@code onError()} if every endpoint fails.
+   *
+   * @param bluetoothDevice bluetooth device to connect
+   * @param endpoints endpoints to try, in order of preference
+   * @return Single with connected {@link BluetoothSocket} on successful connection
+   */
+  public Single<BluetoothSocket> connectAsClient(BluetoothDevice bluetoothDevice,
+      List<ConnectEndpoint> endpoints) {
+    return connectAsClient(bluetoothDevice, endpoints, -1, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Create connection to {@link BluetoothDevice} racing the endpoints, and returns the first
+   * connected {@link BluetoothSocket}. The next endpoint is tried as soon as the previous one
+   * fails, or once {@code staggerDelay} has passed since the previous one was started, so slow
+   * endpoints don't hold up faster ones. Sockets of the endpoints losing the race are closed.
+   * Notifies observers with {@link IOException} via {@code onError()} if every endpoint fails.
+   *
+   * <p>Connects to the same device share its radio, so a stagger delay of a few seconds usually
+   * connects faster than trying all endpoints at once with a delay of 0.
+   *
+   * @param bluetoothDevice bluetooth device to connect
+   * @param endpoints endpoints to try, in order of preference
+   * @param staggerDelay delay before trying the next endpoint while the previous one is still
+   * connecting, or negative to wait for the previous one to fail
+   * @param unit unit of {@code staggerDelay}
+   * @return Single with connected {@link BluetoothSocket} on successful connection
+   */
+  public Single<BluetoothSocket> connectAsClient(final BluetoothDevice bluetoothDevice,
+      List<ConnectEndpoint> endpoints, long staggerDelay, TimeUnit unit) {
+    if (endpoints.isEmpty()) {
+      throw new InvalidParameterException("Endpoints can't be empty");
+    }
+
+    List<Single<BluetoothSocket>> attempts = new ArrayList<>(endpoints.size());
+    for (final ConnectEndpoint endpoint : endpoints) {
+      attempts.add(connect(new Callable<BluetoothSocket>() {
+        @Override public BluetoothSocket call() throws IOException {
+          return endpoint.createSocket(bluetoothDevice);
+        }
+      }, NO_TIMEOUT));
+    }
+
+    long staggerMillis = staggerDelay < 0 ? -1 : unit.toMillis(staggerDelay);
+    return ConnectRace.race(attempts, staggerMillis, Schedulers.io());
+  }
+
+  private static Callable<BluetoothSocket> rfcommSocketToServiceRecord(
+      final BluetoothDevice bluetoothDevice, final UUID uuid) {
+    return new Callable<BluetoothSocket>() {
+      @Override public BluetoothSocket call() throws IOException {
+        return bluetoothDevice.createRfcommSocketToServiceRecord(uuid);
+      }
+    };
+  }
+
+  private static Callable<BluetoothSocket> rfcommSocket(final BluetoothDevice bluetoothDevice,
+      final int channel) {
+    return new Callable<BluetoothSocket>() {
+      @Override public BluetoothSocket call() {
+        return createRfcommSocket(bluetoothDevice, channel);
+      }
+    };
+  }
+
+  /**
+   * Listens for a single connection request, closing the server socket once accepted, failed,
+   * timed out or disposed. A socket accepted while the Single is disposed is closed.
+   */
+  private Single<BluetoothSocket> accept(final String name, final UUID uuid,
+      final long timeoutMillis) {
+    return Single.defer(new Callable<SingleSource<BluetoothSocket>>() {
+      @Override public SingleSource<BluetoothSocket> call() {
+        final SocketHandoff handoff = new SocketHandoff();
+        return handoff.handingOver(Single.create(new SingleOnSubscribe<BluetoothSocket>() {
+          @Override public void subscribe(@NonNull SingleEmitter<BluetoothSocket> emitter) {
+            emitter.setCancellable(handoff);
+            final BluetoothServerSocket bluetoothServerSocket;
             try {
-              bluetoothSocket.close();
-            } catch (IOException suppressed) {
-              if (SDK_INT >= 19) {
-                e.addSuppressed(suppressed);
+              bluetoothServerSocket =
+                  bluetoothAdapter.listenUsingRfcommWithServiceRecord(name, uuid);
+            } catch (IOException e) {
+              emitter.tryOnError(e);
+              return;
+            }
+
+            // Closing is the only way to interrupt a pending accept.
+            if (!handoff.begin(bluetoothServerSocket)) {
+              return;
+            }
+            Disposable timer = scheduleTimeout(handoff, emitter, timeoutMillis);
+            try {
+              BluetoothSocket bluetoothSocket = bluetoothServerSocket.accept();
+              if (handoff.deliver(bluetoothSocket)) {
+                emitter.onSuccess(bluetoothSocket);
               }
+            } catch (IOException e) {
+              emitter.tryOnError(handoff.failure(e));
+            } finally {
+              timer.dispose();
+              Utils.close(bluetoothServerSocket);
             }
           }
-          emitter.onError(e);
-        }
+        }));
+      }
+    });
+  }
+
+  /**
+   * Connects the socket created by the factory, closing it if connecting fails, times out or is
+   * disposed. A socket connected while the Single is disposed is closed.
+   */
+  private Single<BluetoothSocket> connect(final Callable<BluetoothSocket> socketFactory,
+      final long timeoutMillis) {
+    return Single.defer(new Callable<SingleSource<BluetoothSocket>>() {
+      @Override public SingleSource<BluetoothSocket> call() {
+        final SocketHandoff handoff = new SocketHandoff();
+        return handoff.handingOver(Single.create(new SingleOnSubscribe<BluetoothSocket>() {
+          @Override public void subscribe(@NonNull SingleEmitter<BluetoothSocket> emitter)
+              throws Exception {
+            emitter.setCancellable(handoff);
+            final BluetoothSocket bluetoothSocket = socketFactory.call();
+
+            // Closing is the only way to interrupt a pending connect.
+            if (!handoff.begin(bluetoothSocket)) {
+              return;
+            }
+            Disposable timer = scheduleTimeout(handoff, emitter, timeoutMillis);
+            try {
+              beginConnect();
+              try {
+                bluetoothSocket.connect();
+              } finally {
+                endConnect();
+              }
+              if (handoff.deliver(bluetoothSocket)) {
+                emitter.onSuccess(bluetoothSocket);
+              }
+            } catch (IOException e) {
+              try {
+                bluetoothSocket.close();
+              } catch (IOException suppressed) {
+                if (SDK_INT >= 19) {
+                  e.addSuppressed(suppressed);
+                }
+              }
+              emitter.tryOnError(handoff.failure(e));
+            } finally {
+              timer.dispose();
+            }
+          }
+        }));
       }
     });
   }
 
+  /**
+   * Aborts the pending connect or accept of the handoff with {@link ConnectTimeoutException} once
+   * the timeout passes, unless it's {@link #NO_TIMEOUT}. See {@link
+   * SocketHandoff#timeOutAfter(SingleEmitter, long)}.
+   */
+  private static Disposable scheduleTimeout(SocketHandoff handoff,
+      SingleEmitter<BluetoothSocket> emitter, long timeoutMillis) {
+    if (timeoutMillis == NO_TIMEOUT) {
+      return Disposables.empty();
+    }
+
+    return handoff.timeOutAfter(emitter, timeoutMillis);
+  }
+
   /**
    * Observes ACL broadcast actions from {@link BluetoothDevice}. Possible broadcast ACL action
    * values are:
@@ -597,68 +1012,135 @@ public final class RxBluetooth {
    * @return RxJava Observable with {@link AclEvent}
    */
   public Observable<AclEvent> observeAclEvent() {
-    final IntentFilter filter = new IntentFilter();
-    filter.addAction(BluetoothDevice.ACTION_ACL_CONNECTED);
-    filter.addAction(BluetoothDevice.ACTION_ACL_DISCONNECTED);
-    filter.addAction(BluetoothDevice.ACTION_ACL_DISCONNECT_REQUESTED);
-
-    return Observable.create(new ObservableOnSubscribe<AclEvent>() {
-      @Override public void subscribe(@NonNull final ObservableEmitter<AclEvent> emitter)
-          throws Exception {
-        final BroadcastReceiver receiver = new BroadcastReceiver() {
-          @Override public void onReceive(Context context, Intent intent) {
+    return broadcastHub.observe(BluetoothDevice.ACTION_ACL_CONNECTED,
+        BluetoothDevice.ACTION_ACL_DISCONNECTED, BluetoothDevice.ACTION_ACL_DISCONNECT_REQUESTED)
+        .map(new Function<Intent, AclEvent>() {
+          @Override public AclEvent apply(Intent intent) {
             String action = intent.getAction();
             BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
 
-            emitter.onNext(new AclEvent(action, device));
+            return new AclEvent(action, device);
           }
-        };
+        });
+  }
 
-        context.registerReceiver(receiver, filter);
+  /**
+   * Observes ACL broadcasts of the device. Unlike filtering {@link #observeAclEvent()}, events of
+   * other devices aren't delivered to the observer.
+   *
+   * @param bluetoothDevice bluetooth device
+   * @return RxJava Observable with {@link AclEvent} of the device
+   */
+  public Observable<AclEvent> observeAclEvent(BluetoothDevice bluetoothDevice) {
+    return aclEventDispatcher.observe(bluetoothDevice);
+  }
 
-        emitter.setDisposable(new MainThreadDisposable() {
-          @Override protected void onDispose() {
-            context.unregisterReceiver(receiver);
+  /**
+   * Performs a service discovery and fetches a list of UUIDs that can be used to connect to {@link
+   * BluetoothDevice}. Only the result for the given device is emitted, even if service discoveries
+   * of other devices complete meanwhile. Notifies observers with {@link FetchUuidsException} via
+   * {@code onError()} if the service discovery can't be started.
+   *
+   * @param bluetoothDevice bluetooth device to connect
+   * @return RxJava Observable with an array of Device UUIDs that can be used to connect to the device
+   */
+  @RequiresApi(api = Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1)
+  public Observable<Parcelable[]> observeFetchDeviceUuids(final BluetoothDevice bluetoothDevice) {
+    // The receiver is registered when the broadcasts are subscribed, before the query is started.
+    Observable<Parcelable[]> uuids = broadcastHub.observe(BluetoothDevice.ACTION_UUID)
+        .filter(new Predicate<Intent>() {
+          @Override public boolean test(Intent intent) {
+            return bluetoothDevice.equals(intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE));
+          }
+        })
+        .map(new Function<Intent, Parcelable[]>() {
+          @Override public Parcelable[] apply(Intent intent) {
+            Parcelable[] uuids = intent.getParcelableArrayExtra(BluetoothDevice.EXTRA_UUID);
+            return uuids != null ? uuids : new Parcelable[0];
           }
         });
+
+    Completable fetch = Completable.fromAction(new Action() {
+      @Override public void run() {
+        if (!bluetoothDevice.fetchUuidsWithSdp()) {
+          throw new FetchUuidsException();
+        }
       }
     });
+
+    return uuids.mergeWith(fetch.<Parcelable[]>toObservable()).take(1);
   }
 
-    /**
-     * Performs a service discovery and fetches a list of UUIDs that can be used to connect to {@link BluetoothDevice}
-     *
-     * @param bluetoothDevice bluetooth device to connect
-     * @return RxJava Observable with an array of Device UUIDs that can be used to connect to the device
-     */
+  /**
+   * Returns UUIDs of services of {@link BluetoothDevice}, using a cached result of a previous
+   * service discovery if it is younger than {@link #DEFAULT_UUID_CACHE_TTL} milliseconds.
+   *
+   * @param bluetoothDevice bluetooth device
+   * @return RxJava Single with UUIDs of the device
+   * @see #fetchDeviceUuids(BluetoothDevice, long, TimeUnit)
+   */
+  @RequiresApi(api = Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1)
+  public Single<ParcelUuid[]> fetchDeviceUuids(BluetoothDevice bluetoothDevice) {
+    return fetchDeviceUuids(bluetoothDevice, DEFAULT_UUID_CACHE_TTL, TimeUnit.MILLISECONDS);
+  }
 
+  /**
+   * Returns UUIDs of services of {@link BluetoothDevice}. A cached result is used if it is younger
+   * than maxAge. Without one, the UUIDs the system kept from its last service discovery of the
+   * device are used, and only if there are none a new service discovery is performed. Concurrent
+   * calls for the same device share a single service discovery. Notifies observers with {@link
+   * FetchUuidsException} via {@code onError()} if the service discovery can't be started, and
+   * with {@link TimeoutException} if it doesn't answer within {@link #UUID_FETCH_TIMEOUT}
+   * milliseconds; the next call then starts a new one.
+   *
+   * @param bluetoothDevice bluetooth device
+   * @param maxAge maximum age of a cached result
+   * @param unit unit of maxAge
+   * @return RxJava Single with UUIDs of the device
+   */
   @RequiresApi(api = Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1)
-  public Observable<Parcelable[]> observeFetchDeviceUuids(final BluetoothDevice bluetoothDevice) {
-    final IntentFilter filter = new IntentFilter();
-    filter.addAction(BluetoothDevice.ACTION_UUID);
-
-    return Observable.create(new ObservableOnSubscribe<Parcelable[]>() {
-      @Override
-      public void subscribe(@NonNull final ObservableEmitter<Parcelable[]> emitter) {
-        final BroadcastReceiver receiver = new BroadcastReceiver() {
-          @Override public void onReceive(Context context, Intent intent) {
-                  Parcelable[] uuids = intent.getParcelableArrayExtra(BluetoothDevice.EXTRA_UUID);
-                  emitter.onNext(uuids);
-                  emitter.onComplete();
-              }
-        };
+  public Single<ParcelUuid[]> fetchDeviceUuids(BluetoothDevice bluetoothDevice, long maxAge,
+      TimeUnit unit) {
+    return uuidCache.get(bluetoothDevice, unit.toMillis(maxAge));
+  }
+
+  /**
+   * Drops cached UUIDs of {@link BluetoothDevice}, so the next
+   * {@link #fetchDeviceUuids(BluetoothDevice)} performs a service discovery.
+   *
+   * @param bluetoothDevice bluetooth device
+   */
+  public void invalidateDeviceUuids(BluetoothDevice bluetoothDevice) {
+    uuidCache.invalidate(bluetoothDevice);
+  }
 
-        context.registerReceiver(receiver, filter);
+  /**
+   * Returns a shared stream of a state, starting with its current value. Changes are subscribed
+   * before the current value is read, so a change in between isn't missed.
+   */
+  private static Observable<Integer> current(Observable<Integer> changes,
+      Callable<Integer> current) {
+    return changes.mergeWith(Observable.fromCallable(current))
+        .distinctUntilChanged()
+        .replay(1)
+        .refCount();
+  }
 
-        emitter.setDisposable(new MainThreadDisposable() {
-            @Override
-            protected void onDispose() {
-                context.unregisterReceiver(receiver);
-            }
-        });
+  /**
+   * Marks the start of a connect, pausing discovery sessions.
+   */
+  private synchronized void beginConnect() {
+    if (connectsInFlight++ == 0) {
+      connecting.onNext(true);
+    }
+  }
 
-        bluetoothDevice.fetchUuidsWithSdp();
-      }
-    });
+  /**
+   * Marks the end of a connect, resuming discovery sessions once no other connect is in flight.
+   */
+  private synchronized void endConnect() {
+    if (--connectsInFlight == 0) {
+      connecting.onNext(false);
+    }
   }
 }
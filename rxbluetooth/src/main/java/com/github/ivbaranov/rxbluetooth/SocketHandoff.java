@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import android.support.annotation.Nullable;
+import com.github.ivbaranov.rxbluetooth.exceptions.ConnectTimeoutException;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands a socket over from a blocking connect or accept to the observer of a Single, closing it
+ * if the Single is disposed before the socket reached the observer. A disposal racing the
+ * delivery would otherwise make the emitter drop a connected socket without closing it.
+ *
+ * <p>The handoff is used as the emitter's {@link Cancellable}. While the connect is pending,
+ * cancelling closes the pending closeable to interrupt it. Once connected, {@link
+ * #deliver(Closeable)} claims the socket for delivery; if cancelling wins instead, the socket is
+ * closed. The Single must be wrapped with {@link #handingOver(Single)}, which marks the socket as
+ * received, since the emitter also disposes its cancellable after a successful delivery.
+ *
+ * <p>A timeout is recorded by {@link #timeOut(long)} before the pending closeable is closed, so
+ * the connect or accept failing because of the closing is reported by {@link
+ * #failure(IOException)} as the timeout rather than as a generic {@link IOException}.
+ */
+final class SocketHandoff implements Cancellable {
+  private static final int PENDING = 0;
+  private static final int DELIVERING = 1;
+  private static final int HANDED_OVER = 2;
+  private static final int CANCELLED = 3;
+  private static final int TIMED_OUT = 4;
+
+  private final AtomicInteger state = new AtomicInteger(PENDING);
+  private volatile Closeable pending;
+  private volatile Closeable socket;
+  private volatile ConnectTimeoutException timeout;
+
+  /**
+   * Sets what to close to interrupt the pending connect or accept.
+   *
+   * @return false if already cancelled, in which case it has been closed
+   */
+  boolean begin(Closeable pending) {
+    this.pending = pending;
+    if (state.get() == CANCELLED) {
+      Utils.close(pending);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Claims the socket for delivery to the observer.
+   *
+   * @return false if cancelled before, in which case the socket has been closed
+   */
+  boolean deliver(Closeable socket) {
+    this.socket = socket;
+    if (state.compareAndSet(PENDING, DELIVERING)) {
+      return true;
+    }
+    Utils.close(socket);
+    return false;
+  }
+
+  /**
+   * Marks the socket as received by the observer, which owns it from now on.
+   */
+  void handedOver() {
+    state.compareAndSet(DELIVERING, HANDED_OVER);
+  }
+
+  /**
+   * @param single Single created with this handoff as cancellable of its emitter
+   * @return the Single, marking the socket as received once emitted
+   */
+  <T> Single<T> handingOver(Single<T> single) {
+    return single.doOnSuccess(new Consumer<T>() {
+      @Override public void accept(T socket) {
+        handedOver();
+      }
+    });
+  }
+
+  /**
+   * Cancels the pending connect or accept, unless it already succeeded.
+   *
+   * @return true if cancelled
+   */
+  boolean abort() {
+    if (state.compareAndSet(PENDING, CANCELLED)) {
+      Utils.close(pending);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Cancels the pending connect or accept with {@link ConnectTimeoutException} once the timeout
+   * passes. The connect or accept failing because of it must notify the observer with {@link
+   * #failure(IOException)}.
+   *
+   * @param emitter emitter of the connect or accept
+   * @param timeoutMillis the timeout in milliseconds
+   * @return disposable cancelling the timeout
+   */
+  Disposable timeOutAfter(final SingleEmitter<?> emitter, final long timeoutMillis) {
+    return Schedulers.computation().scheduleDirect(new Runnable() {
+      @Override public void run() {
+        ConnectTimeoutException error = timeOut(timeoutMillis);
+        if (error != null) {
+          emitter.tryOnError(error);
+        }
+      }
+    }, timeoutMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Cancels the pending connect or accept because it took too long, unless it already succeeded
+   * or was cancelled.
+   *
+   * @param timeoutMillis the timeout which passed
+   * @return error to notify the observer with, or null if the connect or accept isn't pending
+   */
+  @Nullable ConnectTimeoutException timeOut(long timeoutMillis) {
+    ConnectTimeoutException error = new ConnectTimeoutException(timeoutMillis);
+    timeout = error;
+    if (state.compareAndSet(PENDING, TIMED_OUT)) {
+      Utils.close(pending);
+      return error;
+    }
+    return null;
+  }
+
+  /**
+   * @param e error of the connect or accept
+   * @return error to notify the observer with: the timeout if the connect or accept was
+   * interrupted by {@link #timeOut(long)}, otherwise {@code e}
+   */
+  IOException failure(IOException e) {
+    return state.get() == TIMED_OUT ? timeout : e;
+  }
+
+  /**
+   * Cancels the pending connect or accept, or the delivery of the socket, unless the observer
+   * already received it.
+   */
+  @Override public void cancel() {
+    if (abort()) {
+      return;
+    }
+    if (state.compareAndSet(DELIVERING, CANCELLED)) {
+      Utils.close(socket);
+    }
+  }
+}
@@ -6,8 +6,18 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 final class Utils {
+  private static final long IDLE_THREAD_TIMEOUT_SECONDS = 10;
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
   static void close(final Closeable closeable) {
     if (closeable != null) {
       try {
@@ -32,6 +42,37 @@ final class Utils {
     }
   }
 
+  /**
+   * Creates executor backed by a single named daemon thread, which is started on demand and
+   * stopped after being idle for a while. Tasks submitted after shutdown are run on the calling
+   * thread instead of being rejected, so that they can fail fast rather than never run.
+   */
+  static ExecutorService newSingleThreadExecutor(String name) {
+    return newThreadExecutor(name, 1);
+  }
+
+  /**
+   * Creates executor backed by up to {@code threads} named daemon threads, which behave like the
+   * one of {@link #newSingleThreadExecutor(String)}.
+   */
+  static ExecutorService newThreadExecutor(final String name, int threads) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+        IDLE_THREAD_TIMEOUT_SECONDS,
+        TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+      @Override public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, name + "-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    }, new RejectedExecutionHandler() {
+      @Override public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+        runnable.run();
+      }
+    });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   private Utils() {
     throw new AssertionError("No instances.");
   }
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.ParcelUuid;
+import android.os.SystemClock;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Caches service UUIDs of devices by address. Lookups are answered from the cache while fresh
+ * enough, then from the UUIDs the system kept from its last SDP query, and only then by a new SDP
+ * query, which is shared by all lookups of the same device made while it runs.
+ */
+final class UuidCache {
+  private final Function<BluetoothDevice, Single<ParcelUuid[]>> sdpQuery;
+  private final Map<String, Entry> entries = new HashMap<>();
+  private final Map<String, Single<ParcelUuid[]>> queries = new HashMap<>();
+
+  /**
+   * @param sdpQuery performs an SDP query and returns the UUIDs found. The query stays shared
+   * until it terminates, so it must fail, for example by timing out, if the device never answers.
+   */
+  UuidCache(Function<BluetoothDevice, Single<ParcelUuid[]>> sdpQuery) {
+    this.sdpQuery = sdpQuery;
+  }
+
+  /**
+   * @param device device to look up
+   * @param maxAgeMillis maximum age of a cached result
+   * @return Single with UUIDs of the device
+   */
+  Single<ParcelUuid[]> get(final BluetoothDevice device, final long maxAgeMillis) {
+    return Single.defer(new Callable<SingleSource<ParcelUuid[]>>() {
+      @Override public SingleSource<ParcelUuid[]> call() throws Exception {
+        return lookup(device, maxAgeMillis);
+      }
+    });
+  }
+
+  synchronized void invalidate(BluetoothDevice device) {
+    entries.remove(device.getAddress());
+  }
+
+  private synchronized Single<ParcelUuid[]> lookup(BluetoothDevice device, long maxAgeMillis)
+      throws Exception {
+    final String address = device.getAddress();
+    long now = SystemClock.elapsedRealtime();
+
+    Entry entry = entries.get(address);
+    if (entry != null && now - entry.timestamp <= maxAgeMillis) {
+      return Single.just(entry.uuids.clone());
+    }
+
+    if (entry == null) {
+      // The system keeps the UUIDs of its last query, good enough to start with.
+      ParcelUuid[] known = device.getUuids();
+      if (known != null && known.length > 0) {
+        entries.put(address, new Entry(known, now));
+        return Single.just(known.clone());
+      }
+    }
+
+    Single<ParcelUuid[]> query = queries.get(address);
+    if (query == null) {
+      query = sdpQuery.apply(device)
+          .doOnSuccess(new Consumer<ParcelUuid[]>() {
+            @Override public void accept(ParcelUuid[] uuids) {
+              synchronized (UuidCache.this) {
+                entries.put(address, new Entry(uuids, SystemClock.elapsedRealtime()));
+              }
+            }
+          })
+          .doFinally(new Action() {
+            @Override public void run() {
+              synchronized (UuidCache.this) {
+                queries.remove(address);
+              }
+            }
+          })
+          .cache();
+      queries.put(address, query);
+    }
+    return query.map(new Function<ParcelUuid[], ParcelUuid[]>() {
+      @Override public ParcelUuid[] apply(ParcelUuid[] uuids) {
+        return uuids.clone();
+      }
+    });
+  }
+
+  private static final class Entry {
+    final ParcelUuid[] uuids;
+    final long timestamp;
+
+    Entry(ParcelUuid[] uuids, long timestamp) {
+      this.uuids = uuids;
+      this.timestamp = timestamp;
+    }
+  }
+}
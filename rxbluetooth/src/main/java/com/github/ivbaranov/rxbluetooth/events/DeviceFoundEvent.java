@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.events;
+
+import android.bluetooth.BluetoothClass;
+import android.bluetooth.BluetoothDevice;
+import android.support.annotation.Nullable;
+
+/**
+ * Event container class.  Contains {@link BluetoothDevice} found while discovering, together
+ * with the name, class and signal strength reported by the {@link BluetoothDevice#ACTION_FOUND}
+ * broadcast and the time it was received.
+ */
+public final class DeviceFoundEvent {
+
+  /** Signal strength of events whose broadcast did not carry {@link BluetoothDevice#EXTRA_RSSI}. */
+  public static final int RSSI_UNKNOWN = Short.MIN_VALUE;
+
+  private BluetoothDevice bluetoothDevice;
+  private String name;
+  private BluetoothClass bluetoothClass;
+  private int rssi;
+  private long timestamp;
+
+  public DeviceFoundEvent(BluetoothDevice bluetoothDevice, @Nullable String name,
+      @Nullable BluetoothClass bluetoothClass, int rssi, long timestamp) {
+    this.bluetoothDevice = bluetoothDevice;
+    this.name = name;
+    this.bluetoothClass = bluetoothClass;
+    this.rssi = rssi;
+    this.timestamp = timestamp;
+  }
+
+  public BluetoothDevice getBluetoothDevice() {
+    return bluetoothDevice;
+  }
+
+  @Nullable public String getName() {
+    return name;
+  }
+
+  @Nullable public BluetoothClass getBluetoothClass() {
+    return bluetoothClass;
+  }
+
+  /**
+   * @return signal strength in dBm, or {@link #RSSI_UNKNOWN}
+   */
+  public int getRssi() {
+    return rssi;
+  }
+
+  /**
+   * @return time the broadcast was received, in {@link android.os.SystemClock#elapsedRealtime()}
+   * milliseconds
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  @Override public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    DeviceFoundEvent that = (DeviceFoundEvent) o;
+
+    if (rssi != that.rssi) return false;
+    if (timestamp != that.timestamp) return false;
+    if (bluetoothDevice != null ? !bluetoothDevice.equals(that.bluetoothDevice)
+        : that.bluetoothDevice != null) {
+      return false;
+    }
+    if (name != null ? !name.equals(that.name) : that.name != null) return false;
+    return !(bluetoothClass != null ? !bluetoothClass.equals(that.bluetoothClass)
+        : that.bluetoothClass != null);
+  }
+
+  @Override public int hashCode() {
+    int result = bluetoothDevice != null ? bluetoothDevice.hashCode() : 0;
+    result = 31 * result + (name != null ? name.hashCode() : 0);
+    result = 31 * result + (bluetoothClass != null ? bluetoothClass.hashCode() : 0);
+    result = 31 * result + rssi;
+    result = 31 * result + (int) (timestamp ^ (timestamp >>> 32));
+    return result;
+  }
+
+  @Override public String toString() {
+    return "DeviceFoundEvent{"
+        + "bluetoothDevice="
+        + bluetoothDevice
+        + ", name="
+        + name
+        + ", bluetoothClass="
+        + bluetoothClass
+        + ", rssi="
+        + rssi
+        + ", timestamp="
+        + timestamp
+        + '}';
+  }
+}
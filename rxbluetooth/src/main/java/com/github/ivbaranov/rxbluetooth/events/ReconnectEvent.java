@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.events;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Event container class.  Contains state of a reconnecting connection, the reconnect attempt it
+ * relates to and its timing. Depending on the state:
+ * <ul>
+ * <li>{@link State#DISCONNECTED}: the connection was lost or the first connect failed, with the
+ * cause as error.</li>
+ * <li>{@link State#RECONNECTING}: attempt number {@code attempt} starts after {@code delay}
+ * milliseconds, with the cause of the previous failure as error.</li>
+ * <li>{@link State#CONNECTED}: connected after {@code attempt} failed attempts and {@code
+ * downtime} milliseconds without a connection.</li>
+ * </ul>
+ */
+public final class ReconnectEvent {
+
+  public enum State {
+    DISCONNECTED, RECONNECTING, CONNECTED
+  }
+
+  private State state;
+  private int attempt;
+  private long delay;
+  private long downtime;
+  private Throwable error;
+
+  public ReconnectEvent(State state, int attempt, long delay, long downtime,
+      @Nullable Throwable error) {
+    this.state = state;
+    this.attempt = attempt;
+    this.delay = delay;
+    this.downtime = downtime;
+    this.error = error;
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public int getAttempt() {
+    return attempt;
+  }
+
+  /**
+   * @return backoff before the attempt, in milliseconds
+   */
+  public long getDelay() {
+    return delay;
+  }
+
+  /**
+   * @return time without a connection, in milliseconds
+   */
+  public long getDowntime() {
+    return downtime;
+  }
+
+  @Nullable public Throwable getError() {
+    return error;
+  }
+
+  @Override public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    ReconnectEvent that = (ReconnectEvent) o;
+
+    if (attempt != that.attempt) return false;
+    if (delay != that.delay) return false;
+    if (downtime != that.downtime) return false;
+    if (state != that.state) return false;
+    return !(error != null ? !error.equals(that.error) : that.error != null);
+  }
+
+  @Override public int hashCode() {
+    int result = state.hashCode();
+    result = 31 * result + attempt;
+    result = 31 * result + (int) (delay ^ (delay >>> 32));
+    result = 31 * result + (int) (downtime ^ (downtime >>> 32));
+    result = 31 * result + (error != null ? error.hashCode() : 0);
+    return result;
+  }
+
+  @Override public String toString() {
+    return "ReconnectEvent{" +
+        "state=" + state +
+        ", attempt=" + attempt +
+        ", delay=" + delay +
+        ", downtime=" + downtime +
+        ", error=" + error +
+        '}';
+  }
+}
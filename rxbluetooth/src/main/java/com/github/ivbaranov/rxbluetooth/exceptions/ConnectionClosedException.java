@@ -19,6 +19,10 @@ import java.io.IOException;
 
 public final class ConnectionClosedException extends IOException {
 
+  public ConnectionClosedException(String message) {
+    super(message);
+  }
+
   public ConnectionClosedException(String message, Throwable cause) {
     super(message, cause);
   }
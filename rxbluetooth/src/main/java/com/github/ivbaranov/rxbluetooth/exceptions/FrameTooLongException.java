@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.exceptions;
+
+import java.io.IOException;
+
+/**
+ * Thrown when incoming data exceeds the maximum frame length before a frame boundary was found.
+ */
+public final class FrameTooLongException extends IOException {
+
+  public FrameTooLongException(int maxFrameLength) {
+    super("Frame exceeds maximum length of " + maxFrameLength + " bytes");
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.framing;
+
+import com.github.ivbaranov.rxbluetooth.exceptions.FrameTooLongException;
+import java.security.InvalidParameterException;
+
+/**
+ * Splits incoming bytes into frames separated by any of a set of delimiter bytes, so that with
+ * '\r' and '\n' lines ending with CR, LF or CRLF are all split alike. A run of delimiter bytes
+ * ends a single frame: empty frames are never emitted and delimiters are never part of a frame.
+ *
+ * <p>Frames that are complete within a single chunk are passed to the listener straight from that
+ * chunk; everything else is accumulated in an internal growable buffer that is reused between
+ * frames.
+ */
+public final class AnyDelimiterFrameDecoder implements FrameDecoder {
+
+  private final boolean[] isDelimiter = new boolean[256];
+  private final int maxFrameLength;
+
+  private final FrameBuffer buffer;
+
+  /**
+   * @param delimiters bytes separating frames
+   */
+  public AnyDelimiterFrameDecoder(byte... delimiters) {
+    this(delimiters, DelimiterFrameDecoder.DEFAULT_MAX_FRAME_LENGTH);
+  }
+
+  /**
+   * @param delimiters bytes separating frames
+   * @param maxFrameLength maximum length of a frame
+   */
+  public AnyDelimiterFrameDecoder(byte[] delimiters, int maxFrameLength) {
+    if (delimiters == null || delimiters.length == 0) {
+      throw new InvalidParameterException("Delimiters can't be empty");
+    }
+    if (maxFrameLength <= 0) {
+      throw new InvalidParameterException("Max frame length must be positive");
+    }
+
+    for (byte delimiter : delimiters) {
+      isDelimiter[delimiter & 0xFF] = true;
+    }
+    this.maxFrameLength = maxFrameLength;
+    this.buffer = new FrameBuffer(maxFrameLength, maxFrameLength);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws FrameTooLongException if a frame is longer than the maximum frame length
+   */
+  @Override public void decode(byte[] data, int offset, int length, Listener listener)
+      throws FrameTooLongException {
+    final boolean[] isDelimiter = this.isDelimiter;
+    final int end = offset + length;
+    int start = offset;
+
+    for (int i = offset; i < end; i++) {
+      if (!isDelimiter[data[i] & 0xFF]) {
+        continue;
+      }
+      if (buffer.size == 0) {
+        int frameLength = i - start;
+        if (frameLength > 0) {
+          checkLength(frameLength);
+          listener.onFrame(data, start, frameLength);
+        }
+      } else {
+        buffer.append(data, start, i - start);
+        int frameLength = buffer.size;
+        buffer.clear();
+        listener.onFrame(buffer.array, 0, frameLength);
+      }
+      start = i + 1;
+    }
+
+    if (start < end) {
+      buffer.append(data, start, end - start);
+    }
+  }
+
+  /**
+   * Notifies the listener about pending bytes that were not terminated by a delimiter yet, if
+   * any, and resets the decoder.
+   *
+   * @param listener listener of decoded frames
+   */
+  @Override public void flush(Listener listener) {
+    int pending = buffer.size;
+    reset();
+    if (pending > 0) {
+      listener.onFrame(buffer.array, 0, pending);
+    }
+  }
+
+  @Override public void reset() {
+    buffer.clear();
+  }
+
+  private void checkLength(int frameLength) throws FrameTooLongException {
+    if (frameLength > maxFrameLength) {
+      reset();
+      throw new FrameTooLongException(maxFrameLength);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.framing;
+
+import com.github.ivbaranov.rxbluetooth.exceptions.FrameTooLongException;
+import java.security.InvalidParameterException;
+
+/**
+ * Decodes frames encoded with Consistent Overhead Byte Stuffing and terminated by a stop byte.
+ * A frame broken by a stop byte in the middle of a block is dropped, and decoding resumes with
+ * the next frame.
+ */
+public final class CobsFrameDecoder implements FrameDecoder {
+
+  private final FrameBuffer buffer;
+
+  private int code;
+  private int remaining;
+
+  /**
+   * Creates decoder with {@link DelimiterFrameDecoder#DEFAULT_MAX_FRAME_LENGTH} maximum frame
+   * length.
+   */
+  public CobsFrameDecoder() {
+    this(DelimiterFrameDecoder.DEFAULT_MAX_FRAME_LENGTH);
+  }
+
+  /**
+   * @param maxFrameLength maximum length of a decoded frame
+   */
+  public CobsFrameDecoder(int maxFrameLength) {
+    if (maxFrameLength <= 0) {
+      throw new InvalidParameterException("Max frame length must be positive");
+    }
+
+    this.buffer = new FrameBuffer(maxFrameLength, maxFrameLength);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws FrameTooLongException if a decoded frame is longer than the maximum frame length
+   */
+  @Override public void decode(byte[] data, int offset, int length, Listener listener)
+      throws FrameTooLongException {
+    try {
+      decodeBlocks(data, offset, length, listener);
+    } catch (FrameTooLongException e) {
+      reset();
+      throw e;
+    }
+  }
+
+  private void decodeBlocks(byte[] data, int offset, int length, Listener listener)
+      throws FrameTooLongException {
+    final int end = offset + length;
+    int position = offset;
+
+    while (position < end) {
+      if (remaining > 0) {
+        int runEnd = Math.min(end, position + remaining);
+        int stop = position;
+        while (stop < runEnd && data[stop] != 0) {
+          stop++;
+        }
+        buffer.append(data, position, stop - position);
+        remaining -= stop - position;
+        position = stop;
+        if (position == end) {
+          break;
+        }
+      }
+
+      final int b = data[position++] & 0xFF;
+      if (b == 0) {
+        // Zero inside of a block means the frame is broken, drop it.
+        if (code != 0 && remaining == 0) {
+          listener.onFrame(buffer.array, 0, buffer.size);
+        }
+        reset();
+      } else {
+        if (code != 0 && code != 0xFF) {
+          buffer.append((byte) 0);
+        }
+        code = b;
+        remaining = b - 1;
+      }
+    }
+  }
+
+  /**
+   * Discards incomplete frame, if any.
+   *
+   * @param listener listener of decoded frames
+   */
+  @Override public void flush(Listener listener) {
+    reset();
+  }
+
+  @Override public void reset() {
+    buffer.clear();
+    code = 0;
+    remaining = 0;
+  }
+}
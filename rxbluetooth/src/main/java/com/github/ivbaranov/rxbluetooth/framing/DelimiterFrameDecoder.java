@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.framing;
+
+import com.github.ivbaranov.rxbluetooth.exceptions.FrameTooLongException;
+import java.security.InvalidParameterException;
+
+/**
+ * Splits incoming bytes into frames separated by a delimiter sequence. Bytes are fed in chunks of
+ * any size and a delimiter may span several chunks. Matching is done with a KMP state machine, so
+ * every byte is inspected once and no partial match has to be re-scanned.
+ *
+ * <p>Frames that are complete within a single chunk are passed to the listener straight from that
+ * chunk; everything else is accumulated in an internal growable buffer that is reused between
+ * frames. The delimiter itself is never part of a frame.
+ */
+public final class DelimiterFrameDecoder implements FrameDecoder {
+
+  /** Maximum frame length used when none is specified. */
+  public static final int DEFAULT_MAX_FRAME_LENGTH = 64 * 1024;
+
+  private final byte[] delimiter;
+  private final int[] partialMatch;
+  private final int maxFrameLength;
+
+  private final FrameBuffer buffer;
+  private int matched;
+
+  /**
+   * @param delimiter sequence of bytes separating frames
+   */
+  public DelimiterFrameDecoder(byte[] delimiter) {
+    this(delimiter, DEFAULT_MAX_FRAME_LENGTH);
+  }
+
+  /**
+   * @param delimiter sequence of bytes separating frames
+   * @param maxFrameLength maximum length of a frame, excluding the delimiter
+   */
+  public DelimiterFrameDecoder(byte[] delimiter, int maxFrameLength) {
+    if (delimiter == null || delimiter.length == 0) {
+      throw new InvalidParameterException("Delimiter can't be empty");
+    }
+    if (maxFrameLength <= 0) {
+      throw new InvalidParameterException("Max frame length must be positive");
+    }
+
+    this.delimiter = delimiter.clone();
+    this.partialMatch = partialMatchTable(this.delimiter);
+    this.maxFrameLength = maxFrameLength;
+    this.buffer = new FrameBuffer(maxFrameLength, maxFrameLength + delimiter.length);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws FrameTooLongException if a frame is longer than the maximum frame length
+   */
+  @Override public void decode(byte[] data, int offset, int length, Listener listener)
+      throws FrameTooLongException {
+    final byte[] delimiter = this.delimiter;
+    final int end = offset + length;
+    int start = offset;
+    int matched = this.matched;
+
+    for (int i = offset; i < end; i++) {
+      final byte b = data[i];
+      while (matched > 0 && delimiter[matched] != b) {
+        matched = partialMatch[matched - 1];
+      }
+      if (delimiter[matched] == b && ++matched == delimiter.length) {
+        matched = 0;
+        if (buffer.size == 0) {
+          int frameLength = i + 1 - delimiter.length - start;
+          checkLength(frameLength);
+          listener.onFrame(data, start, frameLength);
+        } else {
+          buffer.append(data, start, i + 1 - start);
+          int frameLength = buffer.size - delimiter.length;
+          buffer.clear();
+          checkLength(frameLength);
+          listener.onFrame(buffer.array, 0, frameLength);
+        }
+        start = i + 1;
+      }
+    }
+
+    this.matched = matched;
+    if (start < end) {
+      buffer.append(data, start, end - start);
+      checkLength(buffer.size - matched);
+    }
+  }
+
+  /**
+   * Notifies the listener about pending bytes that were not terminated by a delimiter yet, if
+   * any, and resets the decoder.
+   *
+   * @param listener listener of decoded frames
+   */
+  @Override public void flush(Listener listener) {
+    int pending = buffer.size;
+    reset();
+    if (pending > 0) {
+      listener.onFrame(buffer.array, 0, pending);
+    }
+  }
+
+  @Override public void reset() {
+    buffer.clear();
+    matched = 0;
+  }
+
+  private void checkLength(int frameLength) throws FrameTooLongException {
+    if (frameLength > maxFrameLength) {
+      reset();
+      throw new FrameTooLongException(maxFrameLength);
+    }
+  }
+
+  /** Returns KMP table: length of the longest proper prefix that is also a suffix. */
+  private static int[] partialMatchTable(byte[] pattern) {
+    int[] table = new int[pattern.length];
+    int k = 0;
+    for (int i = 1; i < pattern.length; i++) {
+      while (k > 0 && pattern[k] != pattern[i]) {
+        k = table[k - 1];
+      }
+      if (pattern[k] == pattern[i]) {
+        k++;
+      }
+      table[i] = k;
+    }
+    return table;
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.framing;
+
+import java.security.InvalidParameterException;
+
+/**
+ * Splits incoming bytes into frames of a fixed length. Frames that are complete within a single
+ * chunk are passed to the listener straight from that chunk.
+ */
+public final class FixedLengthFrameDecoder implements FrameDecoder {
+
+  private final int frameLength;
+  private final byte[] pending;
+  private int size;
+
+  /**
+   * @param frameLength length of every frame
+   */
+  public FixedLengthFrameDecoder(int frameLength) {
+    if (frameLength <= 0) {
+      throw new InvalidParameterException("Frame length must be positive");
+    }
+
+    this.frameLength = frameLength;
+    this.pending = new byte[frameLength];
+  }
+
+  @Override public void decode(byte[] data, int offset, int length, Listener listener) {
+    final int end = offset + length;
+    int position = offset;
+
+    if (size > 0) {
+      int missing = Math.min(frameLength - size, length);
+      append(data, position, missing);
+      position += missing;
+      if (size < frameLength) {
+        return;
+      }
+      size = 0;
+      listener.onFrame(pending, 0, frameLength);
+    }
+
+    while (end - position >= frameLength) {
+      listener.onFrame(data, position, frameLength);
+      position += frameLength;
+    }
+
+    if (position < end) {
+      append(data, position, end - position);
+    }
+  }
+
+  /**
+   * Discards incomplete frame, if any.
+   *
+   * @param listener listener of decoded frames
+   */
+  @Override public void flush(Listener listener) {
+    reset();
+  }
+
+  @Override public void reset() {
+    size = 0;
+  }
+
+  private void append(byte[] data, int offset, int length) {
+    System.arraycopy(data, offset, pending, size, length);
+    size += length;
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.framing;
+
+import com.github.ivbaranov.rxbluetooth.exceptions.FrameTooLongException;
+
+/**
+ * Growable byte buffer used by decoders to accumulate frames spanning several chunks. The backing
+ * array is reused between frames and never grows beyond the given capacity.
+ */
+final class FrameBuffer {
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  private final int maxCapacity;
+  private final int maxFrameLength;
+
+  byte[] array;
+  int size;
+
+  /**
+   * @param maxFrameLength maximum frame length reported on overflow
+   * @param maxCapacity maximum number of bytes held at once
+   */
+  FrameBuffer(int maxFrameLength, int maxCapacity) {
+    this.maxFrameLength = maxFrameLength;
+    this.maxCapacity = maxCapacity;
+    this.array = new byte[Math.min(INITIAL_CAPACITY, maxCapacity)];
+  }
+
+  void append(byte b) throws FrameTooLongException {
+    if (size == array.length) {
+      ensureCapacity(size + 1);
+    }
+    array[size++] = b;
+  }
+
+  void append(byte[] data, int offset, int length) throws FrameTooLongException {
+    int required = size + length;
+    if (required > array.length) {
+      ensureCapacity(required);
+    }
+    System.arraycopy(data, offset, array, size, length);
+    size = required;
+  }
+
+  void clear() {
+    size = 0;
+  }
+
+  private void ensureCapacity(int required) throws FrameTooLongException {
+    if (required > maxCapacity) {
+      size = 0;
+      throw new FrameTooLongException(maxFrameLength);
+    }
+    byte[] grown = new byte[Math.min(Math.max(array.length * 2, required), maxCapacity)];
+    System.arraycopy(array, 0, grown, 0, size);
+    array = grown;
+  }
+}
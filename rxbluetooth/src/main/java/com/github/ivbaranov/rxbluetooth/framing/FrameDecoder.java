@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.framing;
+
+import java.io.IOException;
+
+/**
+ * Decodes frames out of a byte stream that arrives in chunks of arbitrary size. Implementations
+ * keep whatever state is needed between chunks, so instances must not be shared between streams.
+ *
+ * <p>Built-in decoders are {@link DelimiterFrameDecoder}, {@link AnyDelimiterFrameDecoder},
+ * {@link LengthFieldFrameDecoder}, {@link FixedLengthFrameDecoder}, {@link CobsFrameDecoder} and
+ * {@link SlipFrameDecoder}.
+ */
+public interface FrameDecoder {
+
+  /**
+   * Receives decoded frames.
+   */
+  interface Listener {
+    /**
+     * Called for every decoded frame. The array is owned by the decoder and its content is only
+     * valid until this method returns.
+     *
+     * @param buffer array holding the frame
+     * @param offset offset of the frame in the array
+     * @param length length of the frame
+     */
+    void onFrame(byte[] buffer, int offset, int length);
+  }
+
+  /**
+   * Feeds bytes to the decoder, notifying the listener about every frame completed by them.
+   *
+   * @param data array holding the bytes, must not be modified by the decoder
+   * @param offset offset of the first byte
+   * @param length number of bytes
+   * @param listener listener of decoded frames
+   * @throws IOException if data can't be decoded, in which case the decoder discards the pending
+   * frame before throwing
+   */
+  void decode(byte[] data, int offset, int length, Listener listener) throws IOException;
+
+  /**
+   * Called when the stream ends. Notifies the listener about pending bytes if they make sense as
+   * a frame on their own, and resets the decoder.
+   *
+   * @param listener listener of decoded frames
+   */
+  void flush(Listener listener);
+
+  /**
+   * Discards pending bytes.
+   */
+  void reset();
+}
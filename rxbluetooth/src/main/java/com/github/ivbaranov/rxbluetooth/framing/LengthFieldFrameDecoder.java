@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.framing;
+
+import com.github.ivbaranov.rxbluetooth.exceptions.FrameTooLongException;
+import java.nio.ByteOrder;
+import java.security.InvalidParameterException;
+
+/**
+ * Decodes frames prefixed with an unsigned length field of 1, 2 or 4 bytes. The length field
+ * holds the number of payload bytes that follow it, and only the payload is passed to the
+ * listener.
+ *
+ * <p>Payloads that are complete within a single chunk are passed to the listener straight from
+ * that chunk; payloads spanning several chunks are accumulated in a reused buffer.
+ */
+public final class LengthFieldFrameDecoder implements FrameDecoder {
+
+  private final int lengthFieldLength;
+  private final boolean bigEndian;
+  private final int maxFrameLength;
+
+  private final FrameBuffer buffer;
+  private int headerRead;
+  private long frameLength;
+
+  /**
+   * Creates decoder with big endian length field and {@link
+   * DelimiterFrameDecoder#DEFAULT_MAX_FRAME_LENGTH} maximum frame length.
+   *
+   * @param lengthFieldLength length of the length field, either 1, 2 or 4 bytes
+   */
+  public LengthFieldFrameDecoder(int lengthFieldLength) {
+    this(lengthFieldLength, ByteOrder.BIG_ENDIAN, DelimiterFrameDecoder.DEFAULT_MAX_FRAME_LENGTH);
+  }
+
+  /**
+   * @param lengthFieldLength length of the length field, either 1, 2 or 4 bytes
+   * @param byteOrder byte order of the length field
+   * @param maxFrameLength maximum length of a payload
+   */
+  public LengthFieldFrameDecoder(int lengthFieldLength, ByteOrder byteOrder, int maxFrameLength) {
+    if (lengthFieldLength != 1 && lengthFieldLength != 2 && lengthFieldLength != 4) {
+      throw new InvalidParameterException("Length field length must be 1, 2 or 4");
+    }
+    if (maxFrameLength <= 0) {
+      throw new InvalidParameterException("Max frame length must be positive");
+    }
+
+    this.lengthFieldLength = lengthFieldLength;
+    this.bigEndian = byteOrder == ByteOrder.BIG_ENDIAN;
+    this.maxFrameLength = maxFrameLength;
+    this.buffer = new FrameBuffer(maxFrameLength, maxFrameLength);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws FrameTooLongException if length field exceeds the maximum frame length
+   */
+  @Override public void decode(byte[] data, int offset, int length, Listener listener)
+      throws FrameTooLongException {
+    final int end = offset + length;
+    int position = offset;
+
+    while (position < end) {
+      if (headerRead < lengthFieldLength) {
+        int b = data[position++] & 0xFF;
+        if (bigEndian) {
+          frameLength = (frameLength << 8) | b;
+        } else {
+          frameLength |= (long) b << (8 * headerRead);
+        }
+        if (++headerRead < lengthFieldLength) {
+          continue;
+        }
+        if (frameLength > maxFrameLength) {
+          reset();
+          throw new FrameTooLongException(maxFrameLength);
+        }
+        if (frameLength == 0) {
+          listener.onFrame(data, position, 0);
+          reset();
+          continue;
+        }
+      }
+
+      int missing = (int) frameLength - buffer.size;
+      if (buffer.size == 0 && end - position >= missing) {
+        listener.onFrame(data, position, missing);
+        position += missing;
+        reset();
+      } else if (end - position >= missing) {
+        buffer.append(data, position, missing);
+        position += missing;
+        listener.onFrame(buffer.array, 0, buffer.size);
+        reset();
+      } else {
+        buffer.append(data, position, end - position);
+        position = end;
+      }
+    }
+  }
+
+  /**
+   * Discards incomplete frame, if any.
+   *
+   * @param listener listener of decoded frames
+   */
+  @Override public void flush(Listener listener) {
+    reset();
+  }
+
+  @Override public void reset() {
+    buffer.clear();
+    headerRead = 0;
+    frameLength = 0;
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.framing;
+
+import com.github.ivbaranov.rxbluetooth.exceptions.FrameTooLongException;
+import java.security.InvalidParameterException;
+
+/**
+ * Decodes frames encoded with Serial Line Internet Protocol (RFC 1055). Empty frames are skipped
+ * and an invalid escape sequence is passed through as is, as suggested by the RFC.
+ *
+ * <p>Frames without escape sequences that are complete within a single chunk are passed to the
+ * listener straight from that chunk.
+ */
+public final class SlipFrameDecoder implements FrameDecoder {
+
+  private static final byte END = (byte) 0xC0;
+  private static final byte ESC = (byte) 0xDB;
+  private static final byte ESC_END = (byte) 0xDC;
+  private static final byte ESC_ESC = (byte) 0xDD;
+
+  private final int maxFrameLength;
+
+  private final FrameBuffer buffer;
+  private boolean escaped;
+
+  /**
+   * Creates decoder with {@link DelimiterFrameDecoder#DEFAULT_MAX_FRAME_LENGTH} maximum frame
+   * length.
+   */
+  public SlipFrameDecoder() {
+    this(DelimiterFrameDecoder.DEFAULT_MAX_FRAME_LENGTH);
+  }
+
+  /**
+   * @param maxFrameLength maximum length of a decoded frame
+   */
+  public SlipFrameDecoder(int maxFrameLength) {
+    if (maxFrameLength <= 0) {
+      throw new InvalidParameterException("Max frame length must be positive");
+    }
+
+    this.maxFrameLength = maxFrameLength;
+    this.buffer = new FrameBuffer(maxFrameLength, maxFrameLength);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws FrameTooLongException if a decoded frame is longer than the maximum frame length
+   */
+  @Override public void decode(byte[] data, int offset, int length, Listener listener)
+      throws FrameTooLongException {
+    final int end = offset + length;
+    int position = offset;
+
+    while (position < end) {
+      final byte b = data[position];
+
+      if (escaped) {
+        escaped = false;
+        buffer.append(b == ESC_END ? END : b == ESC_ESC ? ESC : b);
+        position++;
+      } else if (b == END) {
+        if (buffer.size > 0) {
+          listener.onFrame(buffer.array, 0, buffer.size);
+          buffer.clear();
+        }
+        position++;
+      } else if (b == ESC) {
+        escaped = true;
+        position++;
+      } else {
+        int stop = position + 1;
+        while (stop < end && data[stop] != END && data[stop] != ESC) {
+          stop++;
+        }
+        if (buffer.size == 0 && stop < end && data[stop] == END) {
+          if (stop - position > maxFrameLength) {
+            reset();
+            throw new FrameTooLongException(maxFrameLength);
+          }
+          listener.onFrame(data, position, stop - position);
+          position = stop + 1;
+        } else {
+          buffer.append(data, position, stop - position);
+          position = stop;
+        }
+      }
+    }
+  }
+
+  /**
+   * Discards incomplete frame, if any.
+   *
+   * @param listener listener of decoded frames
+   */
+  @Override public void flush(Listener listener) {
+    reset();
+  }
+
+  @Override public void reset() {
+    buffer.clear();
+    escaped = false;
+  }
+}
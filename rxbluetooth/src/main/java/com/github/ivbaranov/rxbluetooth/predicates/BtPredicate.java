@@ -15,14 +15,26 @@
  */
 package com.github.ivbaranov.rxbluetooth.predicates;
 
+import android.bluetooth.BluetoothDevice;
 import android.content.BroadcastReceiver;
+import com.github.ivbaranov.rxbluetooth.events.DeviceFoundEvent;
 import io.reactivex.functions.Predicate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Class that contains predicates for filtering bluetooth states, actions and other indicators
  * received from {@link BroadcastReceiver}.
  */
 public final class BtPredicate {
+  /**
+   * Up to this many arguments are compared one by one, more are looked up in a set.
+   */
+  private static final int LINEAR_SEARCH_LIMIT = 8;
+
   /**
    * Function, which checks if current object equals single argument or one of many
    * arguments. It can be used inside filter(...) method from RxJava.
@@ -30,10 +42,26 @@ public final class BtPredicate {
    * @param arguments many arguments or single argument
    * @return Predicate function
    */
-  public static <T> Predicate<T> in(final T... arguments) {
+  @SafeVarargs public static <T> Predicate<T> in(final T... arguments) {
+    if (arguments.length > LINEAR_SEARCH_LIMIT) {
+      final Set<T> set = new HashSet<>(arguments.length * 2);
+      for (T t : arguments) {
+        set.add(t);
+      }
+      return new Predicate<T>() {
+        @Override public boolean test(T object) {
+          return set.contains(object);
+        }
+      };
+    }
+
+    final Object[] copy = new Object[arguments.length];
+    for (int i = 0; i < arguments.length; i++) {
+      copy[i] = arguments[i];
+    }
     return new Predicate<T>() {
       @Override public boolean test(T object) {
-        for (T t : arguments) {
+        for (Object t : copy) {
           if (t.equals(object)) {
             return true;
           }
@@ -43,6 +71,151 @@ public final class BtPredicate {
     };
   }
 
+  /**
+   * Function, which checks if current integer equals single argument or one of many arguments,
+   * comparing primitive values. Meant for states and other integer constants, it can be used
+   * inside filter(...) method from RxJava.
+   *
+   * @param arguments many arguments or single argument
+   * @return Predicate function
+   */
+  public static Predicate<Integer> inInt(final int... arguments) {
+    final int[] sorted = arguments.clone();
+    Arrays.sort(sorted);
+
+    if (sorted.length > LINEAR_SEARCH_LIMIT) {
+      return new Predicate<Integer>() {
+        @Override public boolean test(Integer object) {
+          return object != null && Arrays.binarySearch(sorted, object) >= 0;
+        }
+      };
+    }
+
+    return new Predicate<Integer>() {
+      @Override public boolean test(Integer object) {
+        if (object == null) {
+          return false;
+        }
+        int value = object;
+        for (int i : sorted) {
+          if (i == value) {
+            return true;
+          }
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Function, which checks if the address of current device is one of the arguments.
+   *
+   * @param addresses many addresses or single address
+   * @return Predicate function
+   */
+  public static Predicate<BluetoothDevice> addressIn(String... addresses) {
+    final Set<String> set = new HashSet<>(Arrays.asList(addresses));
+    return new Predicate<BluetoothDevice>() {
+      @Override public boolean test(BluetoothDevice device) {
+        return device != null && set.contains(device.getAddress());
+      }
+    };
+  }
+
+  /**
+   * Function, which checks if the signal strength of current {@link DeviceFoundEvent} is known
+   * and at least the threshold.
+   *
+   * @param threshold minimal signal strength in dBm
+   * @return Predicate function
+   */
+  public static Predicate<DeviceFoundEvent> rssiAtLeast(final int threshold) {
+    return new Predicate<DeviceFoundEvent>() {
+      @Override public boolean test(DeviceFoundEvent event) {
+        int rssi = event.getRssi();
+        return rssi != DeviceFoundEvent.RSSI_UNKNOWN && rssi >= threshold;
+      }
+    };
+  }
+
+  /**
+   * Function, which checks if current {@link DeviceFoundEvent} concerns a device accepted by the
+   * predicate.
+   *
+   * @param predicate predicate of devices, for example {@link #addressIn(String...)}
+   * @return Predicate function
+   */
+  public static Predicate<DeviceFoundEvent> device(
+      final Predicate<? super BluetoothDevice> predicate) {
+    return new Predicate<DeviceFoundEvent>() {
+      @Override public boolean test(DeviceFoundEvent event) throws Exception {
+        return predicate.test(event.getBluetoothDevice());
+      }
+    };
+  }
+
+  /**
+   * Function, which checks if current object is accepted by all of the predicates. Predicates are
+   * tested in order and testing stops at the first one rejecting the object.
+   *
+   * @param predicates many predicates or single predicate
+   * @return Predicate function
+   */
+  @SafeVarargs public static <T> Predicate<T> and(final Predicate<? super T>... predicates) {
+    final List<Predicate<? super T>> copy = new ArrayList<>(predicates.length);
+    for (Predicate<? super T> predicate : predicates) {
+      copy.add(predicate);
+    }
+    return new Predicate<T>() {
+      @Override public boolean test(T object) throws Exception {
+        for (int i = 0, size = copy.size(); i < size; i++) {
+          if (!copy.get(i).test(object)) {
+            return false;
+          }
+        }
+        return true;
+      }
+    };
+  }
+
+  /**
+   * Function, which checks if current object is accepted by any of the predicates. Predicates are
+   * tested in order and testing stops at the first one accepting the object.
+   *
+   * @param predicates many predicates or single predicate
+   * @return Predicate function
+   */
+  @SafeVarargs public static <T> Predicate<T> or(final Predicate<? super T>... predicates) {
+    final List<Predicate<? super T>> copy = new ArrayList<>(predicates.length);
+    for (Predicate<? super T> predicate : predicates) {
+      copy.add(predicate);
+    }
+    return new Predicate<T>() {
+      @Override public boolean test(T object) throws Exception {
+        for (int i = 0, size = copy.size(); i < size; i++) {
+          if (copy.get(i).test(object)) {
+            return true;
+          }
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Function, which checks if current object is rejected by the predicate.
+   *
+   * @param predicate predicate to negate
+   * @return Predicate function
+   */
+  public static <T> Predicate<T> not(final Predicate<? super T> predicate) {
+    return new Predicate<T>() {
+      @Override public boolean test(T object) throws Exception {
+        return !predicate.test(object);
+      }
+    };
+  }
+
   private BtPredicate() {
     throw new AssertionError("No instances.");
   }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.transport;
+
+import android.bluetooth.BluetoothSocket;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.InvalidParameterException;
+
+/**
+ * {@link Transport} over an RFCOMM {@link BluetoothSocket}.
+ */
+public final class BluetoothSocketTransport implements Transport {
+
+  private final BluetoothSocket socket;
+
+  /**
+   * @param socket bluetooth socket
+   */
+  public BluetoothSocketTransport(BluetoothSocket socket) {
+    if (socket == null) {
+      throw new InvalidParameterException("Bluetooth socket can't be null");
+    }
+
+    this.socket = socket;
+  }
+
+  /**
+   * @return the wrapped socket
+   */
+  public BluetoothSocket getSocket() {
+    return socket;
+  }
+
+  @Override public InputStream getInputStream() throws IOException {
+    return socket.getInputStream();
+  }
+
+  @Override public OutputStream getOutputStream() throws IOException {
+    return socket.getOutputStream();
+  }
+
+  @Override public boolean isConnected() {
+    return socket.isConnected();
+  }
+
+  @Override public void close() throws IOException {
+    socket.close();
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.security.InvalidParameterException;
+
+/**
+ * In-memory {@link Transport}. Every instance is one end of a connection whose other end is
+ * returned by {@link #getPeer()}: bytes written to one end are read from the other. Closing
+ * either end closes both; the other end still reads what was written before, then reaches the
+ * end of the stream.
+ *
+ * <p>Unlike {@link java.io.PipedInputStream}, either end may be read and written from any number
+ * of threads, and threads may come and go.
+ */
+public final class PipedTransport implements Transport {
+
+  /** Number of bytes buffered in each direction by {@link #PipedTransport()}. */
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private final Pipe in;
+  private final Pipe out;
+  private final PipedTransport peer;
+
+  /**
+   * Creates a connected pair of transports buffering {@link #DEFAULT_BUFFER_SIZE} bytes in each
+   * direction.
+   */
+  public PipedTransport() {
+    this(DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Creates a connected pair of transports. Writers block while the buffer of their direction is
+   * full.
+   *
+   * @param bufferSize number of bytes buffered in each direction
+   */
+  public PipedTransport(int bufferSize) {
+    if (bufferSize <= 0) {
+      throw new InvalidParameterException("Buffer size must be positive");
+    }
+
+    in = new Pipe(bufferSize);
+    out = new Pipe(bufferSize);
+    peer = new PipedTransport(out, in, this);
+  }
+
+  private PipedTransport(Pipe in, Pipe out, PipedTransport peer) {
+    this.in = in;
+    this.out = out;
+    this.peer = peer;
+  }
+
+  /**
+   * @return the other end of the connection
+   */
+  public PipedTransport getPeer() {
+    return peer;
+  }
+
+  @Override public InputStream getInputStream() {
+    return in.source;
+  }
+
+  @Override public OutputStream getOutputStream() {
+    return out.sink;
+  }
+
+  @Override public boolean isConnected() {
+    return !in.isClosed() && !out.isClosed();
+  }
+
+  @Override public void close() {
+    in.close();
+    out.close();
+  }
+
+  /**
+   * Bounded ring buffer carrying bytes in one direction.
+   */
+  private static final class Pipe {
+    private final byte[] buffer;
+    private int head;
+    private int size;
+    private boolean closed;
+
+    final InputStream source = new InputStream() {
+      @Override public int read() throws IOException {
+        byte[] single = new byte[1];
+        return Pipe.this.read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+      }
+
+      @Override public int read(byte[] b, int off, int len) throws IOException {
+        return Pipe.this.read(b, off, len);
+      }
+
+      @Override public int available() {
+        return Pipe.this.available();
+      }
+
+      @Override public void close() {
+        Pipe.this.close();
+      }
+    };
+
+    final OutputStream sink = new OutputStream() {
+      @Override public void write(int b) throws IOException {
+        Pipe.this.write(new byte[] { (byte) b }, 0, 1);
+      }
+
+      @Override public void write(byte[] b, int off, int len) throws IOException {
+        Pipe.this.write(b, off, len);
+      }
+
+      @Override public void close() {
+        Pipe.this.close();
+      }
+    };
+
+    Pipe(int capacity) {
+      buffer = new byte[capacity];
+    }
+
+    synchronized int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+
+      while (size == 0) {
+        if (closed) {
+          return -1;
+        }
+        await();
+      }
+
+      int count = Math.min(len, size);
+      int first = Math.min(count, buffer.length - head);
+      System.arraycopy(buffer, head, b, off, first);
+      System.arraycopy(buffer, 0, b, off + first, count - first);
+      head = (head + count) % buffer.length;
+      size -= count;
+      notifyAll();
+      return count;
+    }
+
+    synchronized void write(byte[] b, int off, int len) throws IOException {
+      while (len > 0) {
+        if (closed) {
+          throw new IOException("Pipe closed");
+        }
+        if (size == buffer.length) {
+          await();
+          continue;
+        }
+
+        int count = Math.min(len, buffer.length - size);
+        int tail = (head + size) % buffer.length;
+        int first = Math.min(count, buffer.length - tail);
+        System.arraycopy(b, off, buffer, tail, first);
+        System.arraycopy(b, off + first, buffer, 0, count - first);
+        size += count;
+        off += count;
+        len -= count;
+        notifyAll();
+      }
+    }
+
+    synchronized int available() {
+      return size;
+    }
+
+    synchronized boolean isClosed() {
+      return closed;
+    }
+
+    synchronized void close() {
+      closed = true;
+      notifyAll();
+    }
+
+    private void await() throws InterruptedIOException {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+  }
+}
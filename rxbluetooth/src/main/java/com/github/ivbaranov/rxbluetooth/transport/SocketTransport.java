@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.InvalidParameterException;
+
+/**
+ * {@link Transport} over a TCP {@link Socket}, e.g. a serial-over-TCP gateway or a loopback
+ * connection used to load-test the connection pipeline.
+ */
+public final class SocketTransport implements Transport {
+
+  private final Socket socket;
+
+  /**
+   * @param socket connected socket
+   */
+  public SocketTransport(Socket socket) {
+    if (socket == null) {
+      throw new InvalidParameterException("Socket can't be null");
+    }
+
+    this.socket = socket;
+  }
+
+  /**
+   * Opens a TCP connection with Nagle's algorithm disabled, as writes are already batched by the
+   * connection.
+   *
+   * @param host host to connect to
+   * @param port port to connect to
+   * @param timeoutMillis connect timeout in milliseconds, 0 for no timeout
+   * @return connected transport
+   * @throws IOException if the connection can't be established
+   */
+  public static SocketTransport connect(String host, int port, int timeoutMillis)
+      throws IOException {
+    Socket socket = new Socket();
+    try {
+      socket.setTcpNoDelay(true);
+      socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+      return new SocketTransport(socket);
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return the wrapped socket
+   */
+  public Socket getSocket() {
+    return socket;
+  }
+
+  @Override public InputStream getInputStream() throws IOException {
+    return socket.getInputStream();
+  }
+
+  @Override public OutputStream getOutputStream() throws IOException {
+    return socket.getOutputStream();
+  }
+
+  @Override public boolean isConnected() {
+    return socket.isConnected() && !socket.isClosed();
+  }
+
+  @Override public void close() throws IOException {
+    socket.close();
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Bidirectional byte stream a {@link com.github.ivbaranov.rxbluetooth.BluetoothConnection} reads
+ * from and writes to.
+ *
+ * <p>Built-in transports are {@link BluetoothSocketTransport}, {@link SocketTransport},
+ * {@link StreamTransport} and {@link PipedTransport}.
+ */
+public interface Transport extends Closeable {
+
+  /**
+   * @return stream of incoming bytes
+   * @throws IOException if the stream can't be obtained
+   */
+  InputStream getInputStream() throws IOException;
+
+  /**
+   * @return stream of outgoing bytes
+   * @throws IOException if the stream can't be obtained
+   */
+  OutputStream getOutputStream() throws IOException;
+
+  /**
+   * @return true if the transport is connected and not closed yet
+   */
+  boolean isConnected();
+
+  /**
+   * Closes the transport. A read blocked on its input stream must return or fail once it is
+   * closed.
+   *
+   * @throws IOException if closing fails
+   */
+  @Override void close() throws IOException;
+}
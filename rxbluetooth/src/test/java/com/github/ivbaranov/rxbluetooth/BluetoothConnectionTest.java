@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import com.github.ivbaranov.rxbluetooth.exceptions.ConnectionClosedException;
+import com.github.ivbaranov.rxbluetooth.exceptions.FrameTooLongException;
+import com.github.ivbaranov.rxbluetooth.transport.PipedTransport;
+import com.github.ivbaranov.rxbluetooth.transport.StreamTransport;
+import io.reactivex.Flowable;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.subscribers.TestSubscriber;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BluetoothConnectionTest {
+  /** Batch size of a pool size class not used by other tests. */
+  private static final int UNUSED_BATCH_SIZE = 8 * 1024;
+
+  private PipedTransport transport;
+  private BluetoothConnection connection;
+
+  @Before public void setUp() throws Exception {
+    transport = new PipedTransport();
+    connection = new BluetoothConnection(transport);
+  }
+
+  @After public void tearDown() {
+    connection.closeConnection();
+  }
+
+  @Test public void stringStreamSplitsLinesEndingWithLf() throws Exception {
+    assertLines("abc\ndef\n", "abc", "def");
+  }
+
+  @Test public void stringStreamSplitsLinesEndingWithCr() throws Exception {
+    assertLines("abc\rdef\r", "abc", "def");
+  }
+
+  @Test public void stringStreamSplitsLinesEndingWithCrLf() throws Exception {
+    assertLines("abc\r\ndef\r\n", "abc", "def");
+  }
+
+  @Test public void stringStreamSplitsOnAnyGivenDelimiter() throws Exception {
+    TestSubscriber<String> subscriber = connection.observeStringStream(';', '|').test();
+    write("a;b|c;|d;");
+
+    subscriber.awaitCount(4);
+    subscriber.assertValues("a", "b", "c", "d");
+  }
+
+  @Test public void stringStreamWithByteDelimiterSplitsOnWholeSequence() throws Exception {
+    TestSubscriber<String> subscriber =
+        connection.observeStringStream(new byte[] { '\r', '\n' }, 1024).test();
+    write("a\nb\r\nc\r\n");
+
+    subscriber.awaitCount(2);
+    subscriber.assertValues("a\nb", "c");
+  }
+
+  @Test public void stringStreamWithByteDelimiterMatchesDelimiterSplitAcrossReads()
+      throws Exception {
+    connectionReading("a\r", "\nb\r", "\r", "\nc")
+        .observeStringStream(new byte[] { '\r', '\n' }, 1024)
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertValues("a", "b\r", "c")
+        .assertError(ConnectionClosedException.class);
+  }
+
+  @Test public void stringStreamWithByteDelimiterFailsOnTooLongString() throws Exception {
+    connectionReading("ab\r\n", "abc", "de\r\n")
+        .observeStringStream(new byte[] { '\r', '\n' }, 4)
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertValues("ab")
+        .assertError(FrameTooLongException.class);
+  }
+
+  @Test public void stringStreamEmitsPendingStringWhenStreamEnds() throws Exception {
+    BluetoothConnection connection = new BluetoothConnection(
+        new StreamTransport(new ByteArrayInputStream("abc\ndef".getBytes("UTF-8")),
+            new ByteArrayOutputStream()));
+
+    connection.observeStringStream()
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertValues("abc", "def")
+        .assertError(ConnectionClosedException.class);
+  }
+
+  @Test public void cancellingLastSubscriberUnblocksPendingRead() throws Exception {
+    BlockingInputStream input = new BlockingInputStream();
+    BluetoothConnection connection =
+        new BluetoothConnection(new StreamTransport(input, new ByteArrayOutputStream()));
+
+    TestSubscriber<byte[]> subscriber = connection.observeChunkStream().test();
+    assertTrue(input.reading.await(5, TimeUnit.SECONDS));
+    subscriber.dispose();
+
+    assertTrue(input.unblocked.await(5, TimeUnit.SECONDS));
+    assertTrue(connection.observeClosed().blockingAwait(5, TimeUnit.SECONDS));
+    assertFalse(connection.isConnected());
+  }
+
+  @Test public void cancellingOneOfTwoSubscribersKeepsConnectionOpen() throws Exception {
+    TestSubscriber<String> first = connection.observeStringStream().test();
+    TestSubscriber<String> second = connection.observeStringStream().test();
+    first.dispose();
+    write("abc\n");
+
+    second.awaitCount(1);
+    second.assertValues("abc").assertNoErrors();
+    assertTrue(connection.isConnected());
+    assertTrue(connection.send("reply"));
+  }
+
+  @Test public void resubscribingAfterCloseCompletes() throws Exception {
+    BlockingInputStream input = new BlockingInputStream();
+    BluetoothConnection connection =
+        new BluetoothConnection(new StreamTransport(input, new ByteArrayOutputStream()));
+
+    TestSubscriber<byte[]> subscriber = connection.observeChunkStream().test();
+    assertTrue(input.reading.await(5, TimeUnit.SECONDS));
+    subscriber.dispose();
+    assertTrue(connection.observeClosed().blockingAwait(5, TimeUnit.SECONDS));
+
+    connection.observeChunkStream()
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertNoValues()
+        .assertNoErrors()
+        .assertComplete();
+  }
+
+  @Test public void sendAllKeepsOnlyLatestCountForSlowSubscriber() throws Exception {
+    TestSubscriber<Integer> subscriber = connection.sendAll(
+        Flowable.just(new byte[] { 1, 2 }, new byte[] { 3, 4 }, new byte[] { 5, 6 }),
+        2, 0, TimeUnit.MILLISECONDS).test(0);
+
+    byte[] received = new byte[6];
+    DataInputStream peer = new DataInputStream(transport.getPeer().getInputStream());
+    peer.readFully(received);
+    assertArrayEquals(new byte[] { 1, 2, 3, 4, 5, 6 }, received);
+    // Runs after the writer has reported every batch.
+    connection.sendAsync(new byte[0]).blockingAwait(5, TimeUnit.SECONDS);
+
+    subscriber.assertNoValues().requestMore(Long.MAX_VALUE);
+    subscriber.awaitDone(5, TimeUnit.SECONDS).assertResult(2);
+  }
+
+  @Test public void cancellingSendAllReleasesBatch() throws Exception {
+    PublishProcessor<byte[]> payloads = PublishProcessor.create();
+    TestSubscriber<Integer> subscriber =
+        connection.sendAll(payloads, UNUSED_BATCH_SIZE, 1, TimeUnit.HOURS).test();
+    payloads.onNext(new byte[] { 1, 2, 3 });
+    // The writer thread runs one task at a time, so the payload is queued in the batch by now.
+    connection.sendAsync(new byte[0]).blockingAwait(5, TimeUnit.SECONDS);
+    subscriber.dispose();
+
+    byte[] released = BufferPool.SHARED.acquire(UNUSED_BATCH_SIZE);
+    assertArrayEquals(new byte[] { 1, 2, 3 }, Arrays.copyOf(released, 3));
+    assertFalse(payloads.hasSubscribers());
+  }
+
+  @Test public void cancellingSendAllWhileSplittingPayloadStopsWriting() throws Exception {
+    final List<Throwable> uncaught = new CopyOnWriteArrayList<>();
+    Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+    Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+      @Override public void uncaughtException(Thread thread, Throwable e) {
+        uncaught.add(e);
+      }
+    });
+    try {
+      connection.sendAll(Flowable.just(new byte[9]), 8, 1, TimeUnit.HOURS)
+          .take(1)
+          .test()
+          .awaitDone(5, TimeUnit.SECONDS)
+          .assertResult(8);
+      // Runs after the writer has finished with the payload.
+      connection.sendAsync(new byte[0]).blockingAwait(5, TimeUnit.SECONDS);
+    } finally {
+      Thread.setDefaultUncaughtExceptionHandler(handler);
+    }
+
+    assertEquals(Collections.<Throwable>emptyList(), uncaught);
+  }
+
+  private void assertLines(String input, String... lines) throws Exception {
+    TestSubscriber<String> subscriber = connection.observeStringStream().test();
+    write(input);
+
+    assertTrue(subscriber.awaitCount(lines.length).values().size() >= lines.length);
+    subscriber.assertValues(lines).assertNoErrors();
+  }
+
+  /**
+   * Returns a connection whose reads return the given chunks one by one and then end the stream.
+   */
+  private static BluetoothConnection connectionReading(String... chunks) throws Exception {
+    List<InputStream> streams = new ArrayList<>();
+    for (String chunk : chunks) {
+      streams.add(new ByteArrayInputStream(chunk.getBytes("UTF-8")));
+    }
+    return new BluetoothConnection(new StreamTransport(
+        new SequenceInputStream(Collections.enumeration(streams)), new ByteArrayOutputStream()));
+  }
+
+  private void write(String data) throws IOException {
+    transport.getPeer().getOutputStream().write(data.getBytes("UTF-8"));
+    transport.getPeer().getOutputStream().flush();
+  }
+
+  /**
+   * Input stream whose reads block until it's closed, like the stream of an idle socket.
+   */
+  private static final class BlockingInputStream extends InputStream {
+    final CountDownLatch reading = new CountDownLatch(1);
+    final CountDownLatch unblocked = new CountDownLatch(1);
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    @Override public int read() throws IOException {
+      return read(new byte[1], 0, 1);
+    }
+
+    @Override public int read(byte[] b, int off, int len) throws IOException {
+      reading.countDown();
+      try {
+        closed.await();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException();
+      }
+      unblocked.countDown();
+      throw new IOException("Stream closed");
+    }
+
+    @Override public void close() {
+      closed.countDown();
+    }
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class FrameTest {
+  /** Size class not used by other tests, so the pool holds only arrays released here. */
+  private static final int CAPACITY = 16 * 1024;
+
+  @Test public void releasingTwiceReturnsArrayOnce() {
+    Frame frame = Frame.obtain(CAPACITY);
+    byte[] array = frame.array();
+    frame.release();
+    frame.release();
+
+    assertTrue(pooledCopies(array) <= 1);
+  }
+
+  /** Takes every array out of the pool's size class, counting copies of the given one. */
+  private static int pooledCopies(byte[] array) {
+    int copies = 0;
+    for (int i = 0; i <= BufferPool.MAX_ARRAYS_PER_CLASS; i++) {
+      if (BufferPool.SHARED.acquire(CAPACITY) == array) {
+        copies++;
+      }
+    }
+    return copies;
+  }
+}
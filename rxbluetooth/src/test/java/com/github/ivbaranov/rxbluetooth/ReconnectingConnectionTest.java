@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import com.github.ivbaranov.rxbluetooth.events.ReconnectEvent;
+import com.github.ivbaranov.rxbluetooth.transport.PipedTransport;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subscribers.TestSubscriber;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ReconnectingConnectionTest {
+  private final List<PipedTransport> opened = new ArrayList<>();
+  private ReconnectingConnection reconnecting;
+
+  @Before public void setUp() {
+    reconnecting = new ReconnectingConnection(Single.fromCallable(
+        new Callable<BluetoothConnection>() {
+          @Override public BluetoothConnection call() throws Exception {
+            PipedTransport transport = new PipedTransport();
+            synchronized (opened) {
+              opened.add(transport);
+            }
+            return new BluetoothConnection(transport);
+          }
+        }), 1, 10, TimeUnit.MILLISECONDS, 0, 0);
+  }
+
+  @After public void tearDown() {
+    BluetoothConnection connection = reconnecting.getConnection();
+    if (connection != null) {
+      connection.closeConnection();
+    }
+  }
+
+  @Test public void cancellingInputStreamDoesNotReconnect() throws Exception {
+    TestObserver<ReconnectEvent> events = reconnecting.observeReconnectEvents().test();
+    TestObserver<BluetoothConnection> connections = reconnecting.observeConnection().test();
+    connections.awaitCount(1);
+    BluetoothConnection connection = connections.values().get(0);
+
+    TestSubscriber<String> strings = reconnecting.observeStringStream().test();
+    write(0, "abc\n");
+    strings.awaitCount(1);
+    strings.assertValues("abc");
+    strings.dispose();
+
+    // Give a wrongly closed connection time to be noticed and replaced.
+    Thread.sleep(200);
+
+    assertTrue(connection.isConnected());
+    assertSame(connection, reconnecting.getConnection());
+    assertEquals(1, opened.size());
+    connections.assertValueCount(1);
+    assertEquals(1, events.valueCount());
+    assertEquals(ReconnectEvent.State.CONNECTED, events.values().get(0).getState());
+
+    TestSubscriber<String> again = reconnecting.observeStringStream().test();
+    write(0, "def\n");
+    again.awaitCount(1);
+    again.assertValues("def").assertNoErrors();
+    connections.dispose();
+    again.dispose();
+  }
+
+  @Test public void lostConnectionReconnects() throws Exception {
+    TestObserver<BluetoothConnection> connections = reconnecting.observeConnection().test();
+    connections.awaitCount(1);
+
+    opened.get(0).getPeer().close();
+
+    connections.awaitCount(2);
+    connections.assertValueCount(2).assertNoErrors();
+    assertEquals(2, opened.size());
+    connections.dispose();
+  }
+
+  private void write(int index, String data) throws Exception {
+    PipedTransport peer = opened.get(index).getPeer();
+    peer.getOutputStream().write(data.getBytes("UTF-8"));
+    peer.getOutputStream().flush();
+  }
+}
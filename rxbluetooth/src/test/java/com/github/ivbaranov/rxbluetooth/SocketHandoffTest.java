@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth;
+
+import com.github.ivbaranov.rxbluetooth.exceptions.ConnectTimeoutException;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.SingleOnSubscribe;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SocketHandoffTest {
+  private final SocketHandoff handoff = new SocketHandoff();
+  private final CountingCloseable pending = new CountingCloseable();
+  private final CountingCloseable socket = new CountingCloseable();
+
+  @Test public void cancelWhilePendingClosesPending() {
+    assertTrue(handoff.begin(pending));
+    handoff.cancel();
+
+    assertEquals(1, pending.closed);
+    assertFalse(handoff.deliver(socket));
+    assertEquals(1, socket.closed);
+  }
+
+  @Test public void beginAfterCancelClosesPending() {
+    handoff.cancel();
+
+    assertFalse(handoff.begin(pending));
+    assertEquals(1, pending.closed);
+  }
+
+  @Test public void cancelDuringDeliveryClosesSocket() {
+    handoff.begin(pending);
+    assertTrue(handoff.deliver(socket));
+    handoff.cancel();
+
+    assertEquals(1, socket.closed);
+    assertEquals(0, pending.closed);
+  }
+
+  @Test public void cancelAfterHandOverKeepsSocketOpen() {
+    handoff.begin(pending);
+    assertTrue(handoff.deliver(socket));
+    handoff.handedOver();
+    handoff.cancel();
+
+    assertEquals(0, socket.closed);
+  }
+
+  @Test public void abortAfterDeliveryDoesNothing() {
+    handoff.begin(pending);
+    assertTrue(handoff.deliver(socket));
+
+    assertFalse(handoff.abort());
+    assertEquals(0, pending.closed);
+    assertEquals(0, socket.closed);
+  }
+
+  @Test public void timeOutWhilePendingClosesPending() {
+    handoff.begin(pending);
+
+    assertNotNull(handoff.timeOut(100));
+    assertEquals(1, pending.closed);
+    assertFalse(handoff.deliver(socket));
+    assertEquals(1, socket.closed);
+  }
+
+  @Test public void timeOutAfterDeliveryDoesNothing() {
+    handoff.begin(pending);
+    assertTrue(handoff.deliver(socket));
+
+    assertNull(handoff.timeOut(100));
+    assertEquals(0, pending.closed);
+    IOException e = new IOException();
+    assertEquals(e, handoff.failure(e));
+  }
+
+  @Test public void connectInterruptedByTimeoutFailsWithTimeout() throws Exception {
+    FakeSocket socket = new FakeSocket();
+
+    connect(socket, 50)
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertError(ConnectTimeoutException.class);
+    assertEquals(0, socket.closed.getCount());
+  }
+
+  /**
+   * Connects like {@code RxBluetooth} does, with the timeout of the handoff.
+   */
+  private static Single<FakeSocket> connect(final FakeSocket socket, final long timeoutMillis) {
+    final SocketHandoff handoff = new SocketHandoff();
+    return handoff.handingOver(Single.create(new SingleOnSubscribe<FakeSocket>() {
+      @Override public void subscribe(SingleEmitter<FakeSocket> emitter) {
+        emitter.setCancellable(handoff);
+        if (!handoff.begin(socket)) {
+          return;
+        }
+        Disposable timer = handoff.timeOutAfter(emitter, timeoutMillis);
+        try {
+          socket.connect();
+          if (handoff.deliver(socket)) {
+            emitter.onSuccess(socket);
+          }
+        } catch (IOException e) {
+          emitter.tryOnError(handoff.failure(e));
+          socket.failed.countDown();
+        } finally {
+          timer.dispose();
+        }
+      }
+    })).subscribeOn(Schedulers.io());
+  }
+
+  private static final class CountingCloseable implements Closeable {
+    int closed;
+
+    @Override public void close() {
+      closed++;
+    }
+  }
+
+  /**
+   * Socket whose connect blocks until it's closed. Closing waits for the failed connect to notify
+   * the observer, so the error of the interrupted connect always comes before the timeout.
+   */
+  private static final class FakeSocket implements Closeable {
+    final CountDownLatch closed = new CountDownLatch(1);
+    final CountDownLatch failed = new CountDownLatch(1);
+
+    void connect() throws IOException {
+      try {
+        closed.await();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException();
+      }
+      throw new IOException("Socket closed");
+    }
+
+    @Override public void close() throws IOException {
+      closed.countDown();
+      try {
+        failed.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException();
+      }
+    }
+  }
+}
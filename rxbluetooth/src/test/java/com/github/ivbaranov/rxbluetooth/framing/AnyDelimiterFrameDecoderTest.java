@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.framing;
+
+import com.github.ivbaranov.rxbluetooth.exceptions.FrameTooLongException;
+import org.junit.Test;
+
+import static com.github.ivbaranov.rxbluetooth.framing.FrameRecorder.assertDecodes;
+import static com.github.ivbaranov.rxbluetooth.framing.FrameRecorder.bytes;
+import static org.junit.Assert.fail;
+
+public class AnyDelimiterFrameDecoderTest {
+
+  @Test public void decodesFramesSplitAtAnyOffset() throws Exception {
+    assertDecodes(new AnyDelimiterFrameDecoder((byte) '\r', (byte) '\n'),
+        bytes('a', '\n', 'b', '\r', 'c', '\r', '\n', '\n', 'd', '\r'),
+        bytes('a'), bytes('b'), bytes('c'), bytes('d'));
+  }
+
+  @Test public void tooLongFrameWithinChunkThrowsAndResets() throws Exception {
+    AnyDelimiterFrameDecoder decoder = new AnyDelimiterFrameDecoder(bytes('\n'), 3);
+    FrameRecorder recorder = new FrameRecorder();
+
+    try {
+      decoder.decode(bytes('a', 'b', 'c', 'd', '\n'), 0, 5, recorder);
+      fail();
+    } catch (FrameTooLongException expected) {
+    }
+
+    decoder.decode(bytes('x', '\n'), 0, 2, recorder);
+    recorder.assertFrames("after overflow", bytes('x'));
+  }
+
+  @Test public void tooLongFrameAcrossChunksThrowsAndResets() throws Exception {
+    AnyDelimiterFrameDecoder decoder = new AnyDelimiterFrameDecoder(bytes('\n'), 3);
+    FrameRecorder recorder = new FrameRecorder();
+
+    decoder.decode(bytes('a', 'b'), 0, 2, recorder);
+    try {
+      decoder.decode(bytes('c', 'd', '\n'), 0, 3, recorder);
+      fail();
+    } catch (FrameTooLongException expected) {
+    }
+
+    decoder.decode(bytes('x', '\n'), 0, 2, recorder);
+    recorder.assertFrames("after overflow", bytes('x'));
+  }
+
+  @Test public void flushEmitsPendingFrame() throws Exception {
+    AnyDelimiterFrameDecoder decoder = new AnyDelimiterFrameDecoder((byte) '\n');
+    FrameRecorder recorder = new FrameRecorder();
+
+    decoder.decode(bytes('a', '\n', 'b'), 0, 3, recorder);
+    decoder.flush(recorder);
+
+    recorder.assertFrames("after flush", bytes('a'), bytes('b'));
+  }
+}
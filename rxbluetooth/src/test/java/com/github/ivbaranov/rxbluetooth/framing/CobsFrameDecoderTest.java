@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.framing;
+
+import com.github.ivbaranov.rxbluetooth.exceptions.FrameTooLongException;
+import org.junit.Test;
+
+import static com.github.ivbaranov.rxbluetooth.framing.FrameRecorder.assertDecodes;
+import static com.github.ivbaranov.rxbluetooth.framing.FrameRecorder.bytes;
+import static com.github.ivbaranov.rxbluetooth.framing.FrameRecorder.concat;
+import static com.github.ivbaranov.rxbluetooth.framing.FrameRecorder.payload;
+import static org.junit.Assert.fail;
+
+public class CobsFrameDecoderTest {
+
+  @Test public void decodesFramesSplitAtAnyOffset() throws Exception {
+    assertDecodes(new CobsFrameDecoder(),
+        bytes(0x03, 0x11, 0x22, 0x02, 0x33, 0x00, 0x01, 0x00, 0x01, 0x01, 0x00),
+        bytes(0x11, 0x22, 0x00, 0x33), bytes(), bytes(0x00));
+  }
+
+  @Test public void decodesFullBlocksWithoutImplicitZero() throws Exception {
+    byte[] frame = payload(255);
+    assertDecodes(new CobsFrameDecoder(),
+        concat(bytes(0xFF), payload(254), bytes(0x02, frame[254], 0x00)),
+        frame);
+  }
+
+  @Test public void dropsFrameBrokenByStopByte() throws Exception {
+    assertDecodes(new CobsFrameDecoder(),
+        bytes(0x03, 0x11, 0x00, 0x02, 0x33, 0x00),
+        bytes(0x33));
+  }
+
+  @Test public void skipsRepeatedStopBytes() throws Exception {
+    assertDecodes(new CobsFrameDecoder(),
+        bytes(0x00, 0x00, 0x02, 0x33, 0x00, 0x00),
+        bytes(0x33));
+  }
+
+  @Test public void tooLongFrameThrowsAndResets() throws Exception {
+    CobsFrameDecoder decoder = new CobsFrameDecoder(4);
+    FrameRecorder recorder = new FrameRecorder();
+
+    byte[] tooLong = concat(bytes(0x06), payload(5), bytes(0x00));
+    try {
+      decoder.decode(tooLong, 0, tooLong.length, recorder);
+      fail();
+    } catch (FrameTooLongException expected) {
+    }
+
+    decoder.decode(bytes(0x02, 0x33, 0x00), 0, 3, recorder);
+    recorder.assertFrames("after overflow", bytes(0x33));
+  }
+
+  @Test public void flushDiscardsIncompleteFrame() throws Exception {
+    CobsFrameDecoder decoder = new CobsFrameDecoder();
+    FrameRecorder recorder = new FrameRecorder();
+
+    decoder.decode(bytes(0x03, 0x11), 0, 2, recorder);
+    decoder.flush(recorder);
+    decoder.decode(bytes(0x02, 0x33, 0x00), 0, 3, recorder);
+
+    recorder.assertFrames("after flush", bytes(0x33));
+  }
+}
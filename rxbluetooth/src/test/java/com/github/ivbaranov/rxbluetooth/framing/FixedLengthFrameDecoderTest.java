@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.framing;
+
+import org.junit.Test;
+
+import static com.github.ivbaranov.rxbluetooth.framing.FrameRecorder.assertDecodes;
+import static com.github.ivbaranov.rxbluetooth.framing.FrameRecorder.bytes;
+
+public class FixedLengthFrameDecoderTest {
+
+  @Test public void decodesFramesSplitAtAnyOffset() throws Exception {
+    assertDecodes(new FixedLengthFrameDecoder(3),
+        bytes('a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j'),
+        bytes('a', 'b', 'c'), bytes('d', 'e', 'f'), bytes('g', 'h', 'i'));
+  }
+
+  @Test public void flushDiscardsIncompleteFrame() throws Exception {
+    FixedLengthFrameDecoder decoder = new FixedLengthFrameDecoder(2);
+    FrameRecorder recorder = new FrameRecorder();
+
+    decoder.decode(bytes('a'), 0, 1, recorder);
+    decoder.flush(recorder);
+    decoder.decode(bytes('x', 'y'), 0, 2, recorder);
+
+    recorder.assertFrames("after flush", bytes('x', 'y'));
+  }
+}
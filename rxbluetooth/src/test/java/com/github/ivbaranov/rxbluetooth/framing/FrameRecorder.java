@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.framing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Collects copies of decoded frames and checks a decoder against input fed in chunks of every
+ * possible size.
+ */
+final class FrameRecorder implements FrameDecoder.Listener {
+  final List<byte[]> frames = new ArrayList<>();
+
+  @Override public void onFrame(byte[] buffer, int offset, int length) {
+    frames.add(Arrays.copyOfRange(buffer, offset, offset + length));
+  }
+
+  /**
+   * Feeds the input at once, split in two at every offset and one byte at a time, asserting the
+   * decoded frames every time.
+   */
+  static void assertDecodes(FrameDecoder decoder, byte[] input, byte[]... expected)
+      throws IOException {
+    for (int split = 0; split <= input.length; split++) {
+      decoder.reset();
+      FrameRecorder recorder = new FrameRecorder();
+      decoder.decode(input, 0, split, recorder);
+      decoder.decode(input, split, input.length - split, recorder);
+      recorder.assertFrames("split at " + split, expected);
+    }
+
+    decoder.reset();
+    FrameRecorder recorder = new FrameRecorder();
+    for (int i = 0; i < input.length; i++) {
+      decoder.decode(input, i, 1, recorder);
+    }
+    recorder.assertFrames("byte by byte", expected);
+  }
+
+  static byte[] bytes(int... values) {
+    byte[] bytes = new byte[values.length];
+    for (int i = 0; i < values.length; i++) {
+      bytes[i] = (byte) values[i];
+    }
+    return bytes;
+  }
+
+  static byte[] concat(byte[]... arrays) {
+    int length = 0;
+    for (byte[] array : arrays) {
+      length += array.length;
+    }
+    byte[] result = new byte[length];
+    int position = 0;
+    for (byte[] array : arrays) {
+      System.arraycopy(array, 0, result, position, array.length);
+      position += array.length;
+    }
+    return result;
+  }
+
+  /** Returns {@code length} bytes counting up from 1 and skipping 0. */
+  static byte[] payload(int length) {
+    byte[] payload = new byte[length];
+    for (int i = 0; i < length; i++) {
+      payload[i] = (byte) (i % 255 + 1);
+    }
+    return payload;
+  }
+
+  void assertFrames(String message, byte[]... expected) {
+    assertEquals(message, expected.length, frames.size());
+    for (int i = 0; i < expected.length; i++) {
+      assertArrayEquals(message + ", frame " + i, expected[i], frames.get(i));
+    }
+  }
+}
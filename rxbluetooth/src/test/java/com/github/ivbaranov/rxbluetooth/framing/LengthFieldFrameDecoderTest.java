@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.framing;
+
+import com.github.ivbaranov.rxbluetooth.exceptions.FrameTooLongException;
+import java.nio.ByteOrder;
+import org.junit.Test;
+
+import static com.github.ivbaranov.rxbluetooth.framing.FrameRecorder.assertDecodes;
+import static com.github.ivbaranov.rxbluetooth.framing.FrameRecorder.bytes;
+import static com.github.ivbaranov.rxbluetooth.framing.FrameRecorder.concat;
+import static com.github.ivbaranov.rxbluetooth.framing.FrameRecorder.payload;
+import static org.junit.Assert.fail;
+
+public class LengthFieldFrameDecoderTest {
+
+  @Test public void decodesFramesSplitAtAnyOffset() throws Exception {
+    assertDecodes(new LengthFieldFrameDecoder(1),
+        bytes(2, 'a', 'b', 0, 3, 'c', 'd', 'e'),
+        bytes('a', 'b'), bytes(), bytes('c', 'd', 'e'));
+  }
+
+  @Test public void decodesBigEndianLengthField() throws Exception {
+    byte[] frame = payload(300);
+    assertDecodes(new LengthFieldFrameDecoder(2),
+        concat(bytes(0x01, 0x2C), frame, bytes(0x00, 0x01, 'x')),
+        frame, bytes('x'));
+  }
+
+  @Test public void decodesLittleEndianLengthField() throws Exception {
+    byte[] frame = payload(300);
+    assertDecodes(new LengthFieldFrameDecoder(4, ByteOrder.LITTLE_ENDIAN, 1024),
+        concat(bytes(0x2C, 0x01, 0, 0), frame, bytes(1, 0, 0, 0, 'x')),
+        frame, bytes('x'));
+  }
+
+  @Test public void tooLongFrameThrowsAndResets() throws Exception {
+    LengthFieldFrameDecoder decoder =
+        new LengthFieldFrameDecoder(2, ByteOrder.BIG_ENDIAN, 4);
+    FrameRecorder recorder = new FrameRecorder();
+
+    try {
+      decoder.decode(bytes(0, 5), 0, 2, recorder);
+      fail();
+    } catch (FrameTooLongException expected) {
+    }
+
+    decoder.decode(bytes(0, 1, 'x'), 0, 3, recorder);
+    recorder.assertFrames("after overflow", bytes('x'));
+  }
+
+  @Test public void flushDiscardsIncompleteFrame() throws Exception {
+    LengthFieldFrameDecoder decoder = new LengthFieldFrameDecoder(1);
+    FrameRecorder recorder = new FrameRecorder();
+
+    decoder.decode(bytes(3, 'a', 'b'), 0, 3, recorder);
+    decoder.flush(recorder);
+    decoder.decode(bytes(1, 'x'), 0, 2, recorder);
+
+    recorder.assertFrames("after flush", bytes('x'));
+  }
+}
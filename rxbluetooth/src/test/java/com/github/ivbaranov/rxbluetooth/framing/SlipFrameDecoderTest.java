@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.framing;
+
+import com.github.ivbaranov.rxbluetooth.exceptions.FrameTooLongException;
+import org.junit.Test;
+
+import static com.github.ivbaranov.rxbluetooth.framing.FrameRecorder.assertDecodes;
+import static com.github.ivbaranov.rxbluetooth.framing.FrameRecorder.bytes;
+import static org.junit.Assert.fail;
+
+public class SlipFrameDecoderTest {
+  private static final int END = 0xC0;
+  private static final int ESC = 0xDB;
+  private static final int ESC_END = 0xDC;
+  private static final int ESC_ESC = 0xDD;
+
+  @Test public void decodesFramesSplitAtAnyOffset() throws Exception {
+    assertDecodes(new SlipFrameDecoder(),
+        bytes(END, 'a', 'b', END, 'c', END),
+        bytes('a', 'b'), bytes('c'));
+  }
+
+  @Test public void unescapesEndAndEsc() throws Exception {
+    assertDecodes(new SlipFrameDecoder(),
+        bytes('a', ESC, ESC_END, 'b', ESC, ESC_ESC, END),
+        bytes('a', END, 'b', ESC));
+  }
+
+  @Test public void passesInvalidEscapeThrough() throws Exception {
+    assertDecodes(new SlipFrameDecoder(),
+        bytes('a', ESC, 'b', END),
+        bytes('a', 'b'));
+  }
+
+  @Test public void skipsEmptyFrames() throws Exception {
+    assertDecodes(new SlipFrameDecoder(),
+        bytes(END, END, 'x', END, END),
+        bytes('x'));
+  }
+
+  @Test public void tooLongFrameWithinChunkThrowsAndResets() throws Exception {
+    SlipFrameDecoder decoder = new SlipFrameDecoder(4);
+    FrameRecorder recorder = new FrameRecorder();
+
+    try {
+      decoder.decode(bytes('a', 'b', 'c', 'd', 'e', END), 0, 6, recorder);
+      fail();
+    } catch (FrameTooLongException expected) {
+    }
+
+    decoder.decode(bytes('x', END), 0, 2, recorder);
+    recorder.assertFrames("after overflow", bytes('x'));
+  }
+
+  @Test public void tooLongFrameAcrossChunksThrowsAndResets() throws Exception {
+    SlipFrameDecoder decoder = new SlipFrameDecoder(4);
+    FrameRecorder recorder = new FrameRecorder();
+
+    decoder.decode(bytes('a', 'b', ESC), 0, 3, recorder);
+    try {
+      decoder.decode(bytes(ESC_END, 'c', 'd', END), 0, 4, recorder);
+      fail();
+    } catch (FrameTooLongException expected) {
+    }
+
+    decoder.decode(bytes('x', END), 0, 2, recorder);
+    recorder.assertFrames("after overflow", bytes('x'));
+  }
+
+  @Test public void flushDiscardsIncompleteFrame() throws Exception {
+    SlipFrameDecoder decoder = new SlipFrameDecoder();
+    FrameRecorder recorder = new FrameRecorder();
+
+    decoder.decode(bytes('a', ESC), 0, 2, recorder);
+    decoder.flush(recorder);
+    decoder.decode(bytes(ESC_END, END), 0, 2, recorder);
+
+    recorder.assertFrames("after flush", bytes(ESC_END));
+  }
+}
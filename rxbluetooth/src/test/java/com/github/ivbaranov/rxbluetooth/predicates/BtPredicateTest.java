@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2018 Ivan Baranov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.ivbaranov.rxbluetooth.predicates;
+
+import io.reactivex.functions.Predicate;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BtPredicateTest {
+
+  @Test public void inMatchesFewArguments() throws Exception {
+    Predicate<String> predicate = BtPredicate.in("a", "b");
+
+    assertTrue(predicate.test("b"));
+    assertFalse(predicate.test("c"));
+  }
+
+  @Test public void inMatchesManyArguments() throws Exception {
+    Predicate<String> predicate = BtPredicate.in("a", "b", "c", "d", "e", "f", "g", "h", "i");
+
+    assertTrue(predicate.test("i"));
+    assertFalse(predicate.test("z"));
+  }
+
+  @Test public void inIntMatchesFewAndManyArguments() throws Exception {
+    Predicate<Integer> few = BtPredicate.inInt(3, 1, 2);
+    Predicate<Integer> many = BtPredicate.inInt(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 12);
+
+    assertTrue(few.test(2));
+    assertFalse(few.test(4));
+    assertFalse(few.test(null));
+    assertTrue(many.test(12));
+    assertFalse(many.test(11));
+  }
+
+  @Test public void composesPredicates() throws Exception {
+    Predicate<Integer> small = BtPredicate.inInt(1, 2, 3);
+    Predicate<Integer> and = BtPredicate.and(BtPredicate.inInt(2, 5), BtPredicate.not(small));
+    Predicate<Integer> or = BtPredicate.or(BtPredicate.inInt(100), small);
+
+    assertTrue(and.test(5));
+    assertFalse(and.test(2));
+    assertTrue(or.test(100));
+    assertFalse(or.test(50));
+  }
+}